@@ -0,0 +1,139 @@
+package components;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Class builds the synthetic archives the benchmarks extract.  Archives vary in shape and in
+ * compression method, and their contents are generated from a fixed seed so that every run
+ * extracts the same bytes.
+ *
+ * @author kieransherman
+ *
+ */
+public class BenchmarkArchives {
+
+	/**
+	 * The shapes of the synthetic archives.
+	 */
+	public enum Shape {
+		
+		/** Many tiny files in a shallow tree. */
+		TINY_FILES(8000, 512, 2),
+		
+		/** A few huge files. */
+		HUGE_FILES(4, 32*1024*1024, 1),
+		
+		/** Small files spread over a deep tree. */
+		DEEP_TREE(2000, 4*1024, 16),
+		
+		/** Small files with a large file after every 500 of them, the last one at the very end. */
+		MIXED(2000, 4*1024, 4, 16*1024*1024, 500);
+		
+		private final int files;
+		private final int fileSize;
+		private final int depth;
+		private final int largeFileSize;
+		private final int largeEvery;
+		
+		private Shape(int files, int fileSize, int depth) {
+			this(files, fileSize, depth, fileSize, 0);
+		}
+		
+		private Shape(int files, int fileSize, int depth, int largeFileSize, int largeEvery) {
+			this.files = files;
+			this.fileSize = fileSize;
+			this.depth = depth;
+			this.largeFileSize = largeFileSize;
+			this.largeEvery = largeEvery;
+		}
+		
+		/**
+		 * Returns the size of the file at an index of an archive of this shape.
+		 */
+		public int getSize(int i) {
+			return largeEvery > 0 && i % largeEvery == largeEvery-1 ? largeFileSize : fileSize;
+		}
+		
+		/**
+		 * Returns the entry names of an archive of this shape, all under "files/".
+		 */
+		public List<String> getNames() {
+			List<String> names = new ArrayList<String>(files);
+			
+			for(int i = 0; i < files; i++) {
+				StringBuilder name = new StringBuilder("files/");
+				for(int level = 1; level < depth; level++)
+					name.append("d").append((i >> level) % 8).append('/');
+				
+				names.add(name.append("f").append(i).append(".dat").toString());
+			}
+			
+			return names;
+		}
+	}
+	
+	/**
+	 * Writes a synthetic archive.
+	 *
+	 * @param file the archive to write.
+	 * @param shape the shape of the archive.
+	 * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+	 * @throws IOException the archive could not be written.
+	 */
+	public static void write(Path file, Shape shape, int method) throws IOException {
+		Random random = new Random(42);
+		byte[] small = new byte[shape.fileSize];
+		byte[] large = shape.largeEvery > 0 ? new byte[shape.largeFileSize] : small;
+		List<String> names = shape.getNames();
+		
+		try(OutputStream os = Files.newOutputStream(file); JarOutputStream jar = new JarOutputStream(os)) {
+			for(int i = 0; i < names.size(); i++) {
+				String name = names.get(i);
+				byte[] contents = shape.getSize(i) == small.length ? small : large;
+				fill(contents, random);
+				
+				JarEntry entry = new JarEntry(name);
+				entry.setMethod(method);
+				
+				if(method == ZipEntry.STORED) {
+					CRC32 crc = new CRC32();
+					crc.update(contents);
+					
+					entry.setSize(contents.length);
+					entry.setCompressedSize(contents.length);
+					entry.setCrc(crc.getValue());
+				}
+				
+				jar.putNextEntry(entry);
+				jar.write(contents);
+				jar.closeEntry();
+			}
+		}
+	}
+	
+	/**
+	 * Fills a buffer with text-like bytes that compress about as well as source files do.
+	 */
+	private static void fill(byte[] contents, Random random) {
+		for(int i = 0; i < contents.length; i++)
+			contents[i] = (byte)(random.nextInt(8) == 0 ? ' ' : 'a'+random.nextInt(16));
+	}
+	
+	/**
+	 * Returns the compression method with a name, STORED or DEFLATED.
+	 */
+	public static int method(String name) {
+		return name.equals("STORED") ? ZipEntry.STORED : ZipEntry.DEFLATED;
+	}
+
+}
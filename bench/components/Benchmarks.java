@@ -0,0 +1,28 @@
+package components;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Class runs the benchmark suite with the gc profiler, so that every result reports its
+ * allocation rate next to its time.  An optional argument selects benchmarks by regular
+ * expression.
+ *
+ * @author kieransherman
+ *
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "components\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.build();
+		
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,144 @@
+package components;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.BenchmarkArchives.Shape;
+
+/**
+ * Class benchmarks extracting every entry of a synthetic archive on a single thread: the
+ * byte-at-a-time loop the installer originally used in queueFile, against the {@link EntryWriter}
+ * that replaced it.
+ *
+ * @author kieransherman
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark {
+
+	@Param({"TINY_FILES", "HUGE_FILES", "DEEP_TREE"})
+	public Shape shape;
+	
+	@Param({"STORED", "DEFLATED"})
+	public String method;
+	
+	private Path directory;
+	private Path archive;
+	private Path output;
+	private MappedJarReader reader;
+	private EntryWriter writer;
+	private Path[] targets;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("extraction-benchmark");
+		archive = directory.resolve("payload.jar");
+		output = directory.resolve("out");
+		
+		BenchmarkArchives.write(archive, shape, BenchmarkArchives.method(method));
+		
+		reader = new MappedJarReader(archive);
+		writer = new EntryWriter(EntryWriter.DEFAULT_BUFFER_SIZE);
+		targets = new Path[reader.size()];
+		
+		for(int entry = 0; entry < reader.size(); entry++) {
+			if(reader.isDirectory(entry))
+				continue;
+			
+			targets[entry] = output.resolve(reader.getName(entry));
+			Files.createDirectories(targets[entry].getParent());
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		new DirectoryRemover().remove(directory);
+	}
+	
+	/**
+	 * Extracts through the original loop, one byte per call, with a buffered stream on each side.
+	 */
+	@Benchmark
+	public long legacyByteLoop() throws IOException {
+		long bytes = 0;
+		
+		try(JarFile jar = new JarFile(archive.toFile())) {
+			Enumeration<JarEntry> entries = jar.entries();
+			
+			while(entries.hasMoreElements()) {
+				JarEntry file = entries.nextElement();
+				if(file.isDirectory())
+					continue;
+				
+				File toWrite = output.resolve(file.getName()).toFile();
+				
+				try(BufferedInputStream bis = new BufferedInputStream(jar.getInputStream(file));
+						BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(toWrite))) {
+					while(bis.available() > 0) {
+						bos.write(bis.read());
+						bytes++;
+					}
+				}
+			}
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * Extracts through the {@link EntryWriter}: stored entries are transferred straight from the
+	 * mapped archive, and deflated entries are inflated through a reused block buffer.
+	 */
+	@Benchmark
+	public long entryWriter() throws IOException {
+		InstallProgress progress = new InstallProgress();
+		long bytes = 0;
+		
+		for(int entry = 0; entry < targets.length; entry++) {
+			if(targets[entry] == null)
+				continue;
+			
+			if(reader.getMethod(entry) == ZipEntry.STORED) {
+				bytes += writer.transfer(reader, entry, targets[entry], progress);
+			} else {
+				try(InputStream in = reader.getInputStream(entry)) {
+					bytes += writer.write(in, targets[entry], reader.getSize(entry), progress);
+				}
+			}
+		}
+		
+		return bytes;
+	}
+
+}
@@ -0,0 +1,83 @@
+package components;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import components.BenchmarkArchives.Shape;
+
+/**
+ * Class benchmarks the path handling of {@link FileModifier} over the entry names of each
+ * archive shape: converting names to the operating system's separators and creating their
+ * parent directories.  Removing the extracted tree is measured by {@link RemoveDirectoryBenchmark}.
+ *
+ * @author kieransherman
+ *
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileModifierBenchmark {
+
+	@Param({"TINY_FILES", "HUGE_FILES", "DEEP_TREE"})
+	public Shape shape;
+	
+	private List<String> names;
+	private Path directory;
+	private String root;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		names = shape.getNames();
+		directory = Files.createTempDirectory("file-modifier-benchmark");
+		root = directory.toString()+File.separator;
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		new DirectoryRemover().remove(directory);
+	}
+	
+	/**
+	 * Converts every entry name to the operating system's separators.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void getModifiedFilePath(Blackhole blackhole) throws Exception {
+		for(String name : names)
+			blackhole.consume(FileModifier.getModifiedFilePath(name));
+	}
+	
+	/**
+	 * Creates the parent directories of every entry, once they already exist.  This is the cost
+	 * paid for every entry of an installation after the first in each directory.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void createFileSystem() throws Exception {
+		for(String name : names)
+			FileModifier.createFileSystem(root+"existing"+File.separator+FileModifier.getModifiedFilePath(name));
+	}
+
+}
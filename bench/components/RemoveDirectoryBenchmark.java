@@ -0,0 +1,75 @@
+package components;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.BenchmarkArchives.Shape;
+
+/**
+ * Class benchmarks {@link FileModifier#removeDirectory(java.io.File)} on a tree laid out like an
+ * extracted archive of each shape.  Every invocation removes a freshly created tree, so each one
+ * is measured as a single shot.
+ *
+ * @author kieransherman
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 20, batchSize = 1)
+@Fork(1)
+public class RemoveDirectoryBenchmark {
+
+	@Param({"TINY_FILES", "HUGE_FILES", "DEEP_TREE"})
+	public Shape shape;
+	
+	private List<String> names;
+	private Path directory;
+	private Path tree;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		names = shape.getNames();
+		directory = Files.createTempDirectory("remove-directory-benchmark");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		new DirectoryRemover().remove(directory);
+	}
+	
+	@Setup(Level.Invocation)
+	public void createTree() throws IOException {
+		tree = Files.createTempDirectory(directory, "tree");
+		
+		for(String name : names) {
+			Path file = tree.resolve(name);
+			Files.createDirectories(file.getParent());
+			Files.write(file, new byte[16]);
+		}
+	}
+	
+	@Benchmark
+	public boolean removeDirectory() {
+		return FileModifier.removeDirectory(tree.toFile());
+	}
+
+}
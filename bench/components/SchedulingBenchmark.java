@@ -0,0 +1,127 @@
+package components;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.BenchmarkArchives.Shape;
+import components.JarInstaller.TaskOrder;
+
+/**
+ * Class benchmarks extracting a synthetic archive on a pool of workers in each {@link TaskOrder},
+ * so that the time until the last entry is written can be compared between orders.
+ *
+ * @author kieransherman
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SchedulingBenchmark {
+
+	@Param({"MIXED", "DEEP_TREE"})
+	public Shape shape;
+	
+	@Param({"ARCHIVE", "LARGEST_FIRST", "DIRECTORY", "BALANCED"})
+	public TaskOrder order;
+	
+	@Param({"4"})
+	public int workers;
+	
+	private Path directory;
+	private Path archive;
+	private MappedJarReader reader;
+	private EntryWriter writer;
+	private InstallPlan plan;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("scheduling-benchmark");
+		archive = directory.resolve("payload.jar");
+		
+		BenchmarkArchives.write(archive, shape, BenchmarkArchives.method("DEFLATED"));
+		
+		reader = new MappedJarReader(archive);
+		writer = new EntryWriter(EntryWriter.DEFAULT_BUFFER_SIZE);
+	}
+	
+	@Setup(Level.Invocation)
+	public void plan() throws IOException {
+		Path output = directory.resolve("out");
+		new DirectoryRemover().remove(output);
+		
+		plan = new InstallPlan(output, reader.size());
+		
+		for(int entry = 0; entry < reader.size(); entry++)
+			if(!reader.isDirectory(entry))
+				plan.add(entry, plan.resolve(reader.getName(entry)));
+		
+		InstallJournal journal = new InstallJournal(directory.resolve("journal"));
+		plan.createDirectories(journal);
+		journal.commit();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		new DirectoryRemover().remove(directory);
+	}
+	
+	/**
+	 * Extracts every planned entry in the order, and returns once the last one is written.
+	 */
+	@Benchmark
+	public void extract() throws Exception {
+		InstallProgress progress = new InstallProgress();
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		
+		for(int entry : plan.getEntries(order, reader)) {
+			tasks.add(new Runnable() {
+				public void run() {
+					try {
+						if(reader.getMethod(entry) == ZipEntry.STORED) {
+							writer.transfer(reader, entry, plan.getTarget(entry), progress);
+						} else {
+							try(InputStream in = reader.getInputStream(entry)) {
+								writer.write(in, plan.getTarget(entry), reader.getSize(entry), progress);
+							}
+						}
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+		}
+		
+		ExtractionEngine engine = new ExtractionEngine(workers);
+		
+		try {
+			engine.execute(tasks);
+		} finally {
+			engine.shutdown();
+		}
+	}
+
+}
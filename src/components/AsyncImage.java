@@ -0,0 +1,86 @@
+package components;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * Class models an image resource that is decoded in the background the first time it is
+ * requested, so that a window can be shown before its images are ready.  Every image is decoded
+ * on the same daemon thread.
+ * 
+ * @author kieransherman
+ *
+ */
+public class AsyncImage {
+
+	private static ExecutorService decoder;
+	
+	private final String filePath;
+	
+	private volatile BufferedImage image;
+	private boolean requested;
+	
+	/**
+	 * Creates a new AsyncImage for a resource.  Nothing is read until the image is requested.
+	 * 
+	 * @param filePath the resource path of the image.
+	 */
+	public AsyncImage(String filePath) {
+		this.filePath = filePath;
+	}
+	
+	/**
+	 * Begins decoding the image, unless it was already requested.
+	 * 
+	 * @param onLoad run on the event dispatch thread once the image is decoded, or null.
+	 */
+	public synchronized void request(Runnable onLoad) {
+		if(requested)
+			return;
+		
+		requested = true;
+		getDecoder().execute(new Runnable() {
+			public void run() {
+				try {
+					image = ImageIO.read(getClass().getClassLoader().getResourceAsStream(filePath));
+				} catch (Exception e) {
+					e.printStackTrace();
+					return;
+				}
+				
+				if(onLoad != null)
+					SwingUtilities.invokeLater(onLoad);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the decoded image, or null if it is not decoded yet.
+	 */
+	public BufferedImage get() {
+		return image;
+	}
+	
+	/**
+	 * Returns the thread images are decoded on, starting it if needed.
+	 */
+	private static synchronized ExecutorService getDecoder() {
+		if(decoder == null) {
+			decoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "installer-images");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		
+		return decoder;
+	}
+
+}
@@ -16,7 +16,6 @@ import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.border.EmptyBorder;
 
-import components.JarInstaller.InstallType;
 
 /**
  * Class shows a visual representation of a {@link JarInstaller}'s progress, but does not
@@ -26,13 +25,14 @@ import components.JarInstaller.InstallType;
  * @author kieransherman
  *
  */
-public class DefaultUI extends JarInstallerUI {
+public class DefaultUI extends SwingInstallerUI {
 	
 	private Thread shutdownHook;
 	
 	private Font verdana = new Font("Verdana", Font.PLAIN, 11);
 	
 	private volatile JProgressBar progress;
+	private String statistics;
 	private volatile JLabel info;
 	private JButton finish;
 	
@@ -45,6 +45,16 @@ public class DefaultUI extends JarInstallerUI {
 		super(installer);
 	}
 	
+	/**
+	 * Returns a new DefaultUI.  The installer creates its interface through this method, so that
+	 * the class is only loaded if it is the interface chosen.
+	 * 
+	 * @param installer the JarInstaller.
+	 */
+	public static JarInstallerUI create(JarInstaller installer) {
+		return new DefaultUI(installer);
+	}
+	
 	/**
 	 * Begins the installation process.
 	 */
@@ -54,9 +64,10 @@ public class DefaultUI extends JarInstallerUI {
 		installer.setExtractionName(".textgame");
 		
 		try {
-			installer.install(InstallType.INCLUDE_ONLY, "files");
+			installer.install();
 		} catch (Exception e) {
 			installer.quit(e);
+			return;
 		}
 		
 		if(!installer.finish())
@@ -147,6 +158,7 @@ public class DefaultUI extends JarInstallerUI {
 		window.add(buttonPanel, BorderLayout.SOUTH);
 		window.pack();
 		window.setLocationRelativeTo(null);
+		reportFirstFrame("default");
 		window.setVisible(true);
 		
 		return JOptionPane.showConfirmDialog(window, "Begin installation?", null, JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION;
@@ -175,7 +187,7 @@ public class DefaultUI extends JarInstallerUI {
 	 * Sets the text value of info.
 	 */
 	@Override
-	protected synchronized void setText(String line) {
+	protected void setText(String line) {
 		if(info != null)
 			info.setText((line.length() > 55 ? line.substring(0, 53)+"..." : line).toUpperCase());
 	}
@@ -189,11 +201,29 @@ public class DefaultUI extends JarInstallerUI {
 	}
 	
 	/**
-	 * Increments the progress bar by a value.
+	 * Sets the value of the progress bar.
 	 */
 	@Override
-	protected void incrementProgress(int value) {
-		progress.setValue(progress.getValue()+value);
+	protected void setProgress(int value) {
+		progress.setValue(value);
+		progress.setString(getProgressString());
+	}
+	
+	/**
+	 * Shows the throughput and the time remaining next to the progress.
+	 */
+	@Override
+	protected void setStatistics(double bytesPerSecond, long secondsRemaining) {
+		statistics = formatStatistics(bytesPerSecond, secondsRemaining);
+		progress.setString(getProgressString());
+	}
+	
+	/**
+	 * Returns the text painted on the progress bar.
+	 */
+	private String getProgressString() {
+		String percent = (int)(progress.getPercentComplete()*100)+"%";
+		return statistics == null ? percent : percent+"  ("+statistics+")";
 	}
 
 	/**
@@ -0,0 +1,238 @@
+package components;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class models a recursive delete that removes the files of a directory tree in parallel on a
+ * fork-join pool, and removes each directory once everything below it is gone.  It can also remove
+ * a list of files in parallel, as a rollback does with the files its journal recorded.  Failures
+ * do not stop the delete; they are collected in the {@link Result}.
+ *
+ * @author kieransherman
+ *
+ */
+public class DirectoryRemover {
+
+	private static final int FILES_PER_TASK = 64;
+	
+	private final ForkJoinPool pool;
+	
+	/**
+	 * Creates a new DirectoryRemover with one thread per processor.
+	 */
+	public DirectoryRemover() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Creates a new DirectoryRemover with a number of threads.
+	 *
+	 * @param parallelism the number of threads that delete files.
+	 */
+	public DirectoryRemover(int parallelism) {
+		this.pool = new ForkJoinPool(Math.max(1, parallelism));
+	}
+	
+	/**
+	 * Removes a directory and everything in it.  Symbolic links are removed, not followed.  The
+	 * remover's threads are released afterwards, so each DirectoryRemover removes a single tree.
+	 *
+	 * @param directory the directory to remove.
+	 * @return the result of the delete.
+	 */
+	public Result remove(Path directory) {
+		Result result = new Result();
+		
+		try {
+			if(Files.exists(directory, LinkOption.NOFOLLOW_LINKS))
+				pool.invoke(new RemoveDirectory(directory, result));
+		} finally {
+			pool.shutdown();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Removes a list of files in parallel, in no particular order.  Files that no longer exist are
+	 * skipped.  The remover's threads are released afterwards.
+	 *
+	 * @param files the files to remove.
+	 * @return the result of the delete.
+	 */
+	public Result removeFiles(List<Path> files) {
+		Result result = new Result();
+		
+		try {
+			if(!files.isEmpty())
+				pool.invoke(new RemoveFiles(files, result));
+		} finally {
+			pool.shutdown();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Class models the outcome of a delete.
+	 */
+	public static class Result {
+		
+		private final Queue<Path> failures = new ConcurrentLinkedQueue<Path>();
+		private final AtomicInteger filesRemoved = new AtomicInteger();
+		private final AtomicInteger directoriesRemoved = new AtomicInteger();
+		
+		/**
+		 * Returns true if everything was removed.
+		 */
+		public boolean isClean() {
+			return failures.isEmpty();
+		}
+		
+		/**
+		 * Returns the paths that could not be removed.
+		 */
+		public List<Path> getFailures() {
+			List<Path> list = new ArrayList<Path>(failures);
+			Collections.sort(list);
+			return list;
+		}
+		
+		/**
+		 * Returns the number of files removed.
+		 */
+		public int getFilesRemoved() {
+			return filesRemoved.get();
+		}
+		
+		/**
+		 * Returns the number of directories removed.
+		 */
+		public int getDirectoriesRemoved() {
+			return directoriesRemoved.get();
+		}
+		
+		/**
+		 * Records a path that could not be removed.
+		 */
+		protected void fail(Path path) {
+			failures.add(path);
+		}
+	}
+	
+	/**
+	 * Removes a file, recording the result.
+	 */
+	private static void removeFile(Path file, Result result) {
+		try {
+			Files.delete(file);
+			result.filesRemoved.incrementAndGet();
+		} catch (NoSuchFileException e) {
+		} catch (IOException e) {
+			result.fail(file);
+		}
+	}
+	
+	/**
+	 * Class models the removal of one directory: its subdirectories and batches of its files are
+	 * forked as subtasks, and the directory itself is removed after they are joined.
+	 */
+	private static class RemoveDirectory extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final Path directory;
+		private final Result result;
+		
+		private RemoveDirectory(Path directory, Result result) {
+			this.directory = directory;
+			this.result = result;
+		}
+		
+		@Override
+		protected void compute() {
+			if(!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+				removeFile(directory, result);
+				return;
+			}
+			
+			List<RecursiveAction> subtasks = new ArrayList<RecursiveAction>();
+			List<Path> files = new ArrayList<Path>(FILES_PER_TASK);
+			
+			try(DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+				for(Path child : children) {
+					if(Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+						subtasks.add(new RemoveDirectory(child, result));
+					} else {
+						files.add(child);
+						
+						if(files.size() == FILES_PER_TASK) {
+							subtasks.add(new RemoveFiles(files, result));
+							files = new ArrayList<Path>(FILES_PER_TASK);
+						}
+					}
+				}
+			} catch (IOException e) {
+				result.fail(directory);
+				return;
+			}
+			
+			if(!files.isEmpty())
+				subtasks.add(new RemoveFiles(files, result));
+			
+			invokeAll(subtasks);
+			
+			try {
+				Files.delete(directory);
+				result.directoriesRemoved.incrementAndGet();
+			} catch (NoSuchFileException e) {
+			} catch (IOException e) {
+				result.fail(directory);
+			}
+		}
+	}
+	
+	/**
+	 * Class models the removal of a batch of files, which is split in halves until each half is
+	 * small enough to remove on one thread.
+	 */
+	private static class RemoveFiles extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<Path> files;
+		private final Result result;
+		
+		private RemoveFiles(List<Path> files, Result result) {
+			this.files = files;
+			this.result = result;
+		}
+		
+		@Override
+		protected void compute() {
+			if(files.size() > FILES_PER_TASK) {
+				int half = files.size()/2;
+				invokeAll(new RemoveFiles(files.subList(0, half), result), 
+						new RemoveFiles(files.subList(half, files.size()), result));
+				return;
+			}
+			
+			for(Path file : files)
+				removeFile(file, result);
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package components;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+
+/**
+ * Class models the checksums of an entry, computed from its bytes as they are written so that
+ * checking them needs no second pass over the file.  The CRC-32 is always computed; the SHA-256
+ * digest only if the check was created for it.  A worker reuses one check for every entry it
+ * writes.
+ *
+ * @author kieransherman
+ *
+ */
+public class EntryCheck {
+
+	/**
+	 * The name of the attribute holding an entry's SHA-256 digest in a jar manifest.
+	 */
+	public static final String DIGEST_ATTRIBUTE = "SHA-256-Digest";
+	
+	private final CRC32 crc;
+	private final MessageDigest digest;
+	
+	private long size;
+	
+	/**
+	 * Creates a new EntryCheck.
+	 *
+	 * @param sha256 true if the SHA-256 digest is computed as well as the CRC-32.
+	 */
+	public EntryCheck(boolean sha256) {
+		this.crc = new CRC32();
+		
+		try {
+			this.digest = sha256 ? MessageDigest.getInstance("SHA-256") : null;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Returns the SHA-256 digests of the entries listed in a jar manifest, by entry name.  Entries
+	 * without a digest are left out.
+	 */
+	public static Map<String, byte[]> getDigests(Manifest manifest) {
+		Map<String, byte[]> digests = new HashMap<String, byte[]>();
+		
+		if(manifest == null)
+			return digests;
+		
+		for(Map.Entry<String, Attributes> entry : manifest.getEntries().entrySet()) {
+			String value = entry.getValue().getValue(DIGEST_ATTRIBUTE);
+			
+			if(value != null)
+				digests.put(entry.getKey(), Base64.getDecoder().decode(value.trim()));
+		}
+		
+		return digests;
+	}
+	
+	/**
+	 * Clears the check for the next entry.
+	 */
+	public void reset() {
+		crc.reset();
+		size = 0;
+		
+		if(digest != null)
+			digest.reset();
+	}
+	
+	/**
+	 * Adds bytes that were written.
+	 */
+	public void update(byte[] b, int off, int len) {
+		crc.update(b, off, len);
+		size += len;
+		
+		if(digest != null)
+			digest.update(b, off, len);
+	}
+	
+	/**
+	 * Adds the remaining bytes of a buffer that were written.  The buffer's position is left where
+	 * it was.
+	 */
+	public void update(ByteBuffer buffer) {
+		size += buffer.remaining();
+		crc.update(buffer.duplicate());
+		
+		if(digest != null)
+			digest.update(buffer.duplicate());
+	}
+	
+	/**
+	 * Returns true if the bytes added match an entry's size and CRC-32, and its SHA-256 digest if
+	 * one is given.  The check is reset afterwards.
+	 *
+	 * @param expectedSize the size of the entry, or -1 if it is not known.
+	 * @param expectedCrc the CRC-32 of the entry, or -1 if it is not known.
+	 * @param expectedDigest the SHA-256 digest of the entry, or null if it is not known.
+	 */
+	public boolean matches(long expectedSize, long expectedCrc, byte[] expectedDigest) {
+		boolean matches = (expectedSize < 0 || size == expectedSize) && (expectedCrc < 0 || crc.getValue() == expectedCrc);
+		
+		if(digest != null) {
+			byte[] actual = digest.digest();
+			matches &= expectedDigest == null || Arrays.equals(actual, expectedDigest);
+		}
+		
+		reset();
+		return matches;
+	}
+
+}
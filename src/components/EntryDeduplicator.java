@@ -0,0 +1,126 @@
+package components;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class finds entries of an archive that have byte-identical contents.  Candidates are grouped by
+ * their size and CRC-32 from the central directory, and each group is then confirmed with a full
+ * SHA-256 of the entries' contents.
+ *
+ * @author kieransherman
+ *
+ */
+public class EntryDeduplicator {
+
+	private final MappedJarReader jar;
+	
+	/**
+	 * Creates a new EntryDeduplicator for an archive.
+	 *
+	 * @param jar the archive.
+	 */
+	public EntryDeduplicator(MappedJarReader jar) {
+		this.jar = jar;
+	}
+	
+	/**
+	 * Returns the groups of identical entries among a set of entries.  Each group holds at least
+	 * two entries, in archive order.  Empty entries are never grouped.
+	 *
+	 * @param entries the indices of the entries to compare.
+	 * @throws IOException an entry could not be read.
+	 */
+	public List<int[]> findDuplicates(int[] entries) throws IOException {
+		List<Integer> sorted = new ArrayList<Integer>(entries.length);
+		for(int entry : entries)
+			sorted.add(entry);
+		
+		Collections.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int bySize = Long.compare(jar.getSize(a), jar.getSize(b));
+				return bySize != 0 ? bySize : Long.compare(jar.getCrc(a), jar.getCrc(b));
+			}
+		});
+		
+		List<int[]> groups = new ArrayList<int[]>();
+		
+		for(int start = 0, end; start < sorted.size(); start = end) {
+			int first = sorted.get(start);
+			
+			for(end = start+1; end < sorted.size(); end++) {
+				int next = sorted.get(end);
+				if(jar.getSize(next) != jar.getSize(first) || jar.getCrc(next) != jar.getCrc(first))
+					break;
+			}
+			
+			if(end-start > 1 && jar.getSize(first) > 0)
+				confirm(sorted.subList(start, end), groups);
+		}
+		
+		return groups;
+	}
+	
+	/**
+	 * Splits entries with the same size and CRC-32 into groups with the same digest.
+	 */
+	private void confirm(List<Integer> candidates, List<int[]> groups) throws IOException {
+		Map<String, List<Integer>> byDigest = new HashMap<String, List<Integer>>();
+		
+		for(int entry : candidates) {
+			String digest = digest(entry);
+			
+			List<Integer> group = byDigest.get(digest);
+			if(group == null)
+				byDigest.put(digest, group = new ArrayList<Integer>());
+			group.add(entry);
+		}
+		
+		for(List<Integer> group : byDigest.values()) {
+			if(group.size() < 2)
+				continue;
+			
+			int[] indices = new int[group.size()];
+			for(int i = 0; i < indices.length; i++)
+				indices[i] = group.get(i);
+			
+			Arrays.sort(indices);
+			groups.add(indices);
+		}
+	}
+	
+	/**
+	 * Returns the SHA-256 of an entry's contents.
+	 */
+	private String digest(int entry) throws IOException {
+		MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		
+		byte[] buffer = new byte[8192];
+		try(InputStream in = jar.getInputStream(entry)) {
+			int read;
+			while((read = in.read(buffer)) != -1)
+				sha.update(buffer, 0, read);
+		}
+		
+		StringBuilder hex = new StringBuilder();
+		for(byte b : sha.digest())
+			hex.append(String.format("%02x", b));
+		
+		return hex.toString();
+	}
+
+}
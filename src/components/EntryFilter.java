@@ -0,0 +1,367 @@
+package components;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import components.JarInstaller.InstallType;
+
+/**
+ * Class models a filter that decides which entries of an archive are installed.  Rules are globs
+ * matched against the whole entry name: <code>?</code> matches one character and <code>*</code>
+ * any characters within a directory, <code>**</code> matches any characters across directories,
+ * and <code>**&#47;</code> matches any number of whole directories.  A rule without wildcards, or
+ * one ending in "/", is a prefix, as the {@link InstallType} modifier always was.  An entry is
+ * installed if it matches an include rule, or there are none, and matches no exclude rule.
+ * <p>
+ * All rules are compiled into a single automaton.  Its states are built lazily, the first time an
+ * entry name reaches them, and are shared by every later name, so that deciding an entry takes time
+ * linear in the length of its name however many rules there are.  The filter is safe to use from
+ * several threads.
+ *
+ * @author kieransherman
+ *
+ */
+public class EntryFilter {
+
+	private static final int ANY = -1;
+	private static final int STAR = -2;
+	private static final int GLOBSTAR = -3;
+	private static final int DIRECTORIES = -4;
+	private static final int DIRECTORY_NAME = -5;
+	private static final int INCLUDED = -6;
+	private static final int EXCLUDED = -7;
+
+	private static final int MAX_STATES = 4096;
+
+	private final List<String> includes;
+	private final List<String> excludes;
+
+	private volatile Automaton automaton;
+
+	/**
+	 * Creates a new EntryFilter without rules, which installs every entry.
+	 */
+	public EntryFilter() {
+		this.includes = new ArrayList<String>();
+		this.excludes = new ArrayList<String>();
+	}
+
+	/**
+	 * Returns the filter equivalent to an installation type and its modifier.
+	 *
+	 * @param installType the installation type.
+	 * @param modifier the prefix the installation type applies to.
+	 */
+	public static EntryFilter of(InstallType installType, String modifier) {
+		EntryFilter filter = new EntryFilter();
+
+		if(installType == InstallType.INCLUDE_ONLY)
+			filter.include(modifier);
+		else
+		if(installType == InstallType.EXCLUDE)
+			filter.exclude(modifier);
+
+		return filter;
+	}
+
+	/**
+	 * Adds a rule for entries to install.
+	 *
+	 * @throws IllegalArgumentException the rule is empty.
+	 */
+	public synchronized void include(String pattern) {
+		includes.add(check(pattern));
+		automaton = null;
+	}
+
+	/**
+	 * Adds a rule for entries not to install, even if they match an include rule.
+	 *
+	 * @throws IllegalArgumentException the rule is empty.
+	 */
+	public synchronized void exclude(String pattern) {
+		excludes.add(check(pattern));
+		automaton = null;
+	}
+
+	/**
+	 * Returns a rule if it is valid.
+	 */
+	private static String check(String pattern) {
+		if(pattern == null || pattern.isEmpty())
+			throw new IllegalArgumentException("Filter rules cannot be empty.");
+
+		return pattern;
+	}
+
+	/**
+	 * Returns true if an entry should be installed.
+	 *
+	 * @param name the name of the entry, with "/" between directories.
+	 */
+	public boolean accepts(String name) {
+		return compile().accepts(name);
+	}
+
+	/**
+	 * Returns the automaton of the rules, compiling it if a rule was added since it was last used.
+	 */
+	private Automaton compile() {
+		Automaton compiled = automaton;
+
+		if(compiled == null) {
+			synchronized(this) {
+				if(automaton == null)
+					automaton = new Automaton(includes, excludes);
+
+				compiled = automaton;
+			}
+		}
+
+		return compiled;
+	}
+
+	/**
+	 * Returns the rules as they are given on the command line.
+	 */
+	@Override
+	public synchronized String toString() {
+		if(includes.isEmpty() && excludes.isEmpty())
+			return "all";
+
+		StringBuilder rules = new StringBuilder();
+
+		for(String include : includes)
+			rules.append(rules.length() == 0 ? "" : " ").append("--include ").append(include);
+		for(String exclude : excludes)
+			rules.append(rules.length() == 0 ? "" : " ").append("--exclude ").append(exclude);
+
+		return rules.toString();
+	}
+
+	/**
+	 * Class models the automaton compiled from a set of rules.  Every rule becomes a run of tokens,
+	 * one per literal character or wildcard, ended by a token marking whether it includes or excludes.
+	 * A position is the index of the next token to match, and a state is the set of positions that
+	 * every rule can be in after the same characters.
+	 */
+	private static class Automaton {
+
+		private final int[] tokens;
+		private final boolean filtersIncludes;
+		private final Map<BitSet, State> states;
+		private final State initial;
+
+		/**
+		 * Creates a new Automaton matching a set of rules.
+		 */
+		public Automaton(List<String> includes, List<String> excludes) {
+			List<Integer> tokens = new ArrayList<Integer>();
+			BitSet starts = new BitSet();
+
+			for(String include : includes)
+				tokenize(include, INCLUDED, tokens, starts);
+			for(String exclude : excludes)
+				tokenize(exclude, EXCLUDED, tokens, starts);
+
+			this.tokens = new int[tokens.size()];
+			for(int i = 0; i < this.tokens.length; i++)
+				this.tokens[i] = tokens.get(i);
+
+			this.filtersIncludes = !includes.isEmpty();
+			this.states = new ConcurrentHashMap<BitSet, State>();
+			this.initial = state(closure(starts));
+		}
+
+		/**
+		 * Appends the tokens of a rule, and the position it starts at.
+		 */
+		private static void tokenize(String pattern, int end, List<Integer> tokens, BitSet starts) {
+			starts.set(tokens.size());
+			boolean wildcards = false;
+
+			for(int i = 0; i < pattern.length(); i++) {
+				char c = pattern.charAt(i);
+
+				if(c == '*' && i+1 < pattern.length() && pattern.charAt(i+1) == '*') {
+					wildcards = true;
+					i++;
+
+					if(i+1 < pattern.length() && pattern.charAt(i+1) == '/') {
+						tokens.add(DIRECTORIES);
+						tokens.add(DIRECTORY_NAME);
+						i++;
+					} else {
+						tokens.add(GLOBSTAR);
+					}
+				}
+				else
+				if(c == '*') {
+					wildcards = true;
+					tokens.add(STAR);
+				}
+				else
+				if(c == '?') {
+					wildcards = true;
+					tokens.add(ANY);
+				}
+				else
+					tokens.add((int)c);
+			}
+
+			if(!wildcards || pattern.endsWith("/"))
+				tokens.add(GLOBSTAR);
+
+			tokens.add(end);
+		}
+
+		/**
+		 * Returns true if an entry name is accepted by the rules.
+		 */
+		public boolean accepts(String name) {
+			State state = initial;
+
+			for(int i = 0; i < name.length() && !state.dead; i++)
+				state = state.next(this, name.charAt(i));
+
+			return (!filtersIncludes || state.included) && !state.excluded;
+		}
+
+		/**
+		 * Returns the state for a set of positions, creating it the first time it is reached.
+		 */
+		private State state(BitSet positions) {
+			State state = states.get(positions);
+
+			if(state == null) {
+				state = new State(positions, tokens);
+
+				if(states.size() < MAX_STATES) {
+					State existing = states.putIfAbsent(positions, state);
+					if(existing != null)
+						state = existing;
+				}
+			}
+
+			return state;
+		}
+
+		/**
+		 * Returns the state reached from a state by a character.
+		 */
+		private State step(State from, char c) {
+			BitSet next = new BitSet(tokens.length);
+
+			for(int i = from.positions.nextSetBit(0); i >= 0; i = from.positions.nextSetBit(i+1)) {
+				int token = tokens[i];
+
+				if(token == DIRECTORIES)
+					token = tokens[++i];
+
+				if(token == GLOBSTAR)
+					next.set(i);
+				else
+				if(token == STAR && c != '/')
+					next.set(i);
+				else
+				if(token == DIRECTORY_NAME) {
+					next.set(i);
+					if(c == '/')
+						next.set(i+1);
+				}
+				else
+				if(token == ANY && c != '/')
+					next.set(i+1);
+				else
+				if(token == c)
+					next.set(i+1);
+			}
+
+			return state(closure(next));
+		}
+
+		/**
+		 * Returns a set of positions along with every position reachable from them without matching
+		 * a character.
+		 */
+		private BitSet closure(BitSet positions) {
+			BitSet closed = (BitSet)positions.clone();
+
+			for(int i = closed.nextSetBit(0); i >= 0; i = closed.nextSetBit(i+1)) {
+				int token = tokens[i];
+
+				if(token == STAR || token == GLOBSTAR)
+					closed.set(i+1);
+				else
+				if(token == DIRECTORIES)
+					closed.set(i+2);
+			}
+
+			return closed;
+		}
+
+	}
+
+	/**
+	 * Class models a state of the automaton, along with the transitions found from it so far.
+	 */
+	private static class State {
+
+		private final BitSet positions;
+		private final boolean included;
+		private final boolean excluded;
+		private final boolean dead;
+		private final State[] ascii;
+		private final Map<Character, State> other;
+
+		/**
+		 * Creates a new State for a set of positions.
+		 */
+		public State(BitSet positions, int[] tokens) {
+			boolean included = false;
+			boolean excluded = false;
+
+			for(int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i+1)) {
+				if(tokens[i] == INCLUDED)
+					included = true;
+				else
+				if(tokens[i] == EXCLUDED)
+					excluded = true;
+			}
+
+			this.positions = positions;
+			this.included = included;
+			this.excluded = excluded;
+			this.dead = positions.isEmpty();
+			this.ascii = new State[128];
+			this.other = new HashMap<Character, State>();
+		}
+
+		/**
+		 * Returns the state reached by a character, stepping the automaton the first time.
+		 */
+		public State next(Automaton automaton, char c) {
+			if(c < ascii.length) {
+				State next = ascii[c];
+				if(next == null)
+					ascii[c] = next = automaton.step(this, c);
+
+				return next;
+			}
+
+			synchronized(other) {
+				State next = other.get(c);
+				if(next == null)
+					other.put(c, next = automaton.step(this, c));
+
+				return next;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,259 @@
+package components;
+
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Class models the writer used by the extraction workers to copy an entry's contents to disk
+ * in blocks.  Each worker thread reuses its own copy buffer and inflater.  Large entries can be
+ * preallocated: their files are extended to the final size before any block is written into them.
+ *
+ * @author kieransherman
+ *
+ */
+public class EntryWriter {
+
+	public static final int DEFAULT_BUFFER_SIZE = 64*1024;
+	public static final long DEFAULT_PREALLOCATION_THRESHOLD = 1024*1024;
+	
+	private static final long TRANSFER_CHUNK = 8*1024*1024;
+	
+	private final int bufferSize;
+	private final long preallocationThreshold;
+	private final ThreadLocal<byte[]> buffers;
+	private final ThreadLocal<Inflater> inflaters;
+	
+	/**
+	 * Creates a new EntryWriter with a copy buffer size, which does not preallocate.
+	 *
+	 * @param bufferSize the size of each worker's copy buffer in bytes.
+	 */
+	public EntryWriter(int bufferSize) {
+		this(bufferSize, 0);
+	}
+	
+	/**
+	 * Creates a new EntryWriter with a copy buffer size and a preallocation threshold.
+	 *
+	 * @param bufferSize the size of each worker's copy buffer in bytes.
+	 * @param preallocationThreshold the size from which entries are preallocated, or 0 to never
+	 * preallocate.
+	 */
+	public EntryWriter(int bufferSize, long preallocationThreshold) {
+		this.bufferSize = Math.max(512, bufferSize);
+		this.preallocationThreshold = Math.max(0, preallocationThreshold);
+		this.buffers = new ThreadLocal<byte[]>() {
+			protected byte[] initialValue() {
+				return new byte[EntryWriter.this.bufferSize];
+			}
+		};
+		this.inflaters = new ThreadLocal<Inflater>() {
+			protected Inflater initialValue() {
+				return new Inflater(true);
+			}
+		};
+	}
+	
+	/**
+	 * Returns the size of the copy buffer.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	/**
+	 * Returns the size from which entries are preallocated, or 0 if they never are.
+	 */
+	public long getPreallocationThreshold() {
+		return preallocationThreshold;
+	}
+	
+	/**
+	 * Extracts an entry from the archive to a file.  Stored entries are transferred, and deflated
+	 * entries are inflated with the calling thread's inflater, so that a worker extracting many
+	 * small entries does not allocate a new inflater for each one.
+	 *
+	 * @param jar the archive containing the entry.
+	 * @param entry the index of the entry.
+	 * @param target the file to write.
+	 * @param progress the progress to report to.
+	 * @return the number of bytes written.
+	 * @throws IOException the entry could not be read or written.
+	 */
+	public long extract(MappedJarReader jar, int entry, Path target, InstallProgress progress) throws IOException {
+		return extract(jar, entry, target, null, progress);
+	}
+	
+	/**
+	 * Extracts an entry from the archive to a file, adding the bytes written to a check.
+	 *
+	 * @param check the check to add the bytes to, or null.
+	 * @see #extract(MappedJarReader, int, Path, InstallProgress)
+	 */
+	public long extract(MappedJarReader jar, int entry, Path target, EntryCheck check, InstallProgress progress) throws IOException {
+		if(jar.getMethod(entry) == ZipEntry.STORED)
+			return transfer(jar, entry, target, check, progress);
+		
+		try(InputStream in = jar.getInputStream(entry, inflaters.get())) {
+			return write(in, target, jar.getSize(entry), check, progress);
+		}
+	}
+	
+	/**
+	 * Copies a stream to a file, creating the file or truncating it if it already exists.  The
+	 * copy stops early if the calling thread is interrupted.
+	 *
+	 * @param in the stream to copy from; it is left open.
+	 * @param target the file to write.
+	 * @param size the expected number of bytes, or -1 if unknown.
+	 * @param progress the progress to report to.
+	 * @return the number of bytes written.
+	 * @throws IOException the entry could not be read or written.
+	 */
+	public long write(InputStream in, Path target, long size, InstallProgress progress) throws IOException {
+		return write(in, target, size, null, progress);
+	}
+	
+	/**
+	 * Copies a stream to a file, adding the bytes written to a check as they are written.
+	 *
+	 * @param check the check to add the bytes to, or null.
+	 * @see #write(InputStream, Path, long, InstallProgress)
+	 */
+	public long write(InputStream in, Path target, long size, EntryCheck check, InstallProgress progress) throws IOException {
+		byte[] buffer = buffers.get();
+		ByteBuffer block = ByteBuffer.wrap(buffer);
+		Thread worker = Thread.currentThread();
+		
+		long bytesWritten = 0;
+		
+		try(FileChannel out = open(target, size)) {
+			int read;
+			while(!worker.isInterrupted() && (read = in.read(buffer)) != -1) {
+				block.clear().limit(read);
+				while(block.hasRemaining())
+					out.write(block, bytesWritten+block.position());
+				
+				bytesWritten += read;
+				
+				if(check != null)
+					check.update(buffer, 0, read);
+				progress.addBytes(read);
+			}
+		} finally {
+			if(bytesWritten != size && preallocates(size))
+				truncate(target, bytesWritten);
+		}
+		
+		return bytesWritten;
+	}
+	
+	/**
+	 * Transfers a stored entry from the archive to a file in the kernel, without copying its
+	 * contents through the Java heap.  The transfer stops early if the calling thread is interrupted.
+	 *
+	 * @param jar the archive containing the entry.
+	 * @param entry the index of a stored entry.
+	 * @param target the file to write.
+	 * @param progress the progress to report to.
+	 * @return the number of bytes written.
+	 * @throws IOException the entry could not be transferred.
+	 */
+	public long transfer(MappedJarReader jar, int entry, Path target, InstallProgress progress) throws IOException {
+		return transfer(jar, entry, target, null, progress);
+	}
+	
+	/**
+	 * Transfers a stored entry from the archive to a file, adding each transferred chunk to a check.
+	 * The contents never pass through the heap on their way to the file, so the check reads the
+	 * chunk from the archive's mapping, and the size from what the kernel reports written.
+	 *
+	 * @param check the check to add the bytes to, or null.
+	 * @see #transfer(MappedJarReader, int, Path, InstallProgress)
+	 */
+	public long transfer(MappedJarReader jar, int entry, Path target, EntryCheck check, InstallProgress progress) throws IOException {
+		Thread worker = Thread.currentThread();
+		
+		long dataOffset = jar.getDataOffset(entry);
+		long size = jar.getSize(entry);
+		long bytesWritten = 0;
+		
+		try(FileChannel out = open(target, size)) {
+			while(bytesWritten < size && !worker.isInterrupted()) {
+				long transferred = jar.transferTo(dataOffset, bytesWritten, Math.min(TRANSFER_CHUNK, size-bytesWritten), out);
+				if(transferred <= 0)
+					throw new EOFException("Unexpected end of entry: "+jar.getName(entry));
+				
+				if(check != null)
+					check.update(jar.getData(dataOffset, bytesWritten, (int)transferred));
+				
+				bytesWritten += transferred;
+				progress.addBytes(transferred);
+			}
+		} finally {
+			if(bytesWritten != size && preallocates(size))
+				truncate(target, bytesWritten);
+		}
+		
+		return bytesWritten;
+	}
+	
+	/**
+	 * Returns true if an entry of a size is preallocated.
+	 */
+	private boolean preallocates(long size) {
+		return preallocationThreshold > 0 && size >= preallocationThreshold;
+	}
+	
+	/**
+	 * Cuts a preallocated file that was not filled back to the bytes written into it, so that it is
+	 * never mistaken for a complete one.  A cancel closes the channel the entry was written through
+	 * by interrupting the worker, so the file is reopened without a channel to truncate it; if even
+	 * that fails, it is deleted instead.
+	 */
+	private static void truncate(Path target, long length) {
+		try(RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+			file.setLength(length);
+		} catch (IOException e) {
+			try {
+				Files.deleteIfExists(target);
+			} catch (IOException f) {
+				f.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Returns a channel to write an entry to, creating the file or truncating it if it already
+	 * exists.  A preallocated file is instead set to the entry's size right away.  Java cannot ask
+	 * for the space itself the way fallocate does, but setting the length lets file systems that
+	 * allocate on extension, like NTFS, reserve it in one piece instead of growing the file block
+	 * by block; elsewhere the file is only sized, and is filled in place by positional writes.
+	 */
+	private FileChannel open(Path target, long size) throws IOException {
+		if(!preallocates(size))
+			return FileChannel.open(target, CREATE, TRUNCATE_EXISTING, WRITE);
+		
+		RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw");
+		
+		try {
+			file.setLength(size);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+		
+		return file.getChannel();
+	}
+
+}
\ No newline at end of file
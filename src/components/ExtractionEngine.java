@@ -0,0 +1,160 @@
+package components;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class models a bounded pool of worker threads that executes extraction tasks concurrently.
+ * A batch of tasks is submitted with {@link #execute(List)}, which blocks on a completion barrier
+ * until every task has either run or been cancelled.
+ *
+ * @author kieransherman
+ *
+ */
+public class ExtractionEngine {
+
+	private final ExecutorService workers;
+	private final int workerCount;
+	
+	private final AtomicReference<Throwable> failure;
+	
+	private volatile CountDownLatch barrier;
+	private volatile boolean cancelled;
+	
+	/**
+	 * Creates a new ExtractionEngine with a fixed number of workers.
+	 *
+	 * @param workerCount the number of worker threads.
+	 */
+	public ExtractionEngine(int workerCount) {
+		this.workerCount = Math.max(1, workerCount);
+		this.failure = new AtomicReference<Throwable>();
+		this.workers = Executors.newFixedThreadPool(this.workerCount, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			
+			public Thread newThread(Runnable r) {
+				Thread worker = new Thread(r, "installer-worker-"+count.incrementAndGet());
+				worker.setDaemon(true);
+				return worker;
+			}
+		});
+	}
+	
+	/**
+	 * Returns the number of workers in the pool.
+	 */
+	public int getWorkerCount() {
+		return workerCount;
+	}
+	
+	/**
+	 * Executes a batch of tasks on the pool and waits until all of them have finished.
+	 *
+	 * @param tasks the tasks to execute.
+	 * @throws Exception a task failed, or the engine was cancelled.  An error thrown by a task is
+	 * wrapped in an {@link ExecutionException}, so that it is rolled back like any other failure.
+	 * A cancel is reported as an {@link InterruptedException} even if tasks failed because of it.
+	 */
+	public void execute(List<? extends Runnable> tasks) throws Exception {
+		CountDownLatch latch = new CountDownLatch(tasks.size());
+		barrier = latch;
+		
+		for(Runnable task : tasks) {
+			try {
+				workers.execute(new Task(task, latch));
+			} catch (RejectedExecutionException e) {
+				latch.countDown();
+			}
+		}
+		
+		latch.await();
+		
+		Throwable cause = failure.get();
+		
+		if(cancelled)
+			throw new InterruptedException("Installation cancelled.");
+		if(cause instanceof Error)
+			throw new ExecutionException(cause);
+		if(cause != null)
+			throw (Exception)cause;
+	}
+	
+	/**
+	 * Cancels all queued tasks and interrupts the running ones.
+	 */
+	public void cancel() {
+		cancelled = true;
+		
+		List<Runnable> pending = workers.shutdownNow();
+		CountDownLatch latch = barrier;
+		
+		if(latch != null)
+			for(int i = 0; i < pending.size(); i++)
+				latch.countDown();
+		
+		InstallerEvents.Cancellation event = new InstallerEvents.Cancellation();
+		event.pendingTasks = pending.size();
+		event.commit();
+	}
+	
+	/**
+	 * Returns true if the engine has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Stops accepting tasks and releases the workers once they are idle.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+	
+	/**
+	 * Waits for the running tasks to finish.
+	 *
+	 * @return true if the workers terminated before the timeout.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return workers.awaitTermination(timeout, unit);
+	}
+	
+	/**
+	 * Wraps a task so that it counts down the completion barrier and records its failure, whether
+	 * it is an exception or an error.
+	 */
+	private class Task implements Runnable {
+		
+		private final Runnable task;
+		private final CountDownLatch latch;
+		
+		private Task(Runnable task, CountDownLatch latch) {
+			this.task = task;
+			this.latch = latch;
+		}
+		
+		public void run() {
+			try {
+				if(!cancelled && failure.get() == null)
+					task.run();
+			} catch (RuntimeException e) {
+				Throwable cause = e.getCause() instanceof Exception ? e.getCause() : e;
+				failure.compareAndSet(null, cause);
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			} finally {
+				latch.countDown();
+			}
+		}
+	}
+
+}
@@ -4,6 +4,9 @@ import java.io.File;
 
 public class FileModifier {
 	
+	private static final String FILE_SEPARATOR = resolveFileSeparator();
+	private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().contains("windows");
+	
 	/**
 	 * Recursively removes a directory and all of its subfolders and files.
 	 */
@@ -15,22 +18,7 @@ public class FileModifier {
 		if(!directory.isDirectory())
 			return false;
 
-		String[] list = directory.list();
-		if(list != null) {
-			for(int i = 0; i < list.length; i++) {
-				File entry = new File(directory, list[i]);
-				
-				if(entry.isDirectory()) {
-					if(!removeDirectory(entry))
-						return false;
-				} else {
-					if(!entry.delete())
-						return false;
-				}
-			}
-		}
-
-		return directory.delete();
+		return new DirectoryRemover().remove(directory.toPath()).isClean();
 	}
 	
 	/**
@@ -53,36 +41,38 @@ public class FileModifier {
 	 * Returns a String containing the operating system-specific file separator.
 	 */
 	protected static String getFileSeparator() throws Exception {
-		String os = System.getProperty("os.name").toLowerCase();
-
-		if(os.contains("mac")) {
-			return "/";
-		} else
-		if(os.contains("nix") || os.contains("nux")) {
-			return "/";
-		} else
-		if(os.contains("windows")) {
-			return "\\\\";
-		} else
+		if(FILE_SEPARATOR == null)
 			throw new Exception("Unsupported operating system.");
+		
+		return FILE_SEPARATOR;
 	}
 	
 	/**
 	 * Returns a modified filepath containing operating system-specific file separators.
 	 */
 	protected static String getModifiedFilePath(String filePath) throws Exception {
-		String os = System.getProperty("os.name").toLowerCase();
+		if(FILE_SEPARATOR == null)
+			throw new Exception("Unsupported operating system.");
 		
+		return WINDOWS ? filePath.replace('/', '\\') : filePath;
+	}
+	
+	/**
+	 * Returns the file separator pattern of the operating system, or null if it is unsupported.
+	 */
+	private static String resolveFileSeparator() {
+		String os = System.getProperty("os.name").toLowerCase();
+
 		if(os.contains("mac")) {
-			return filePath;
+			return "/";
 		} else
 		if(os.contains("nix") || os.contains("nux")) {
-			return filePath;
+			return "/";
 		} else
 		if(os.contains("windows")) {
-			return filePath.replaceAll("[/]", "\\\\");
+			return "\\\\";
 		} else
-			throw new Exception("Unsupported operating system.");
+			return null;
 	}
 
-}
+}
\ No newline at end of file
@@ -11,7 +11,6 @@ import java.awt.GridLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.image.BufferedImage;
 import java.io.File;
 
 import javax.swing.BorderFactory;
@@ -25,8 +24,9 @@ import javax.swing.JProgressBar;
 import javax.swing.JTextField;
 import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
-import components.JarInstaller.InstallType;
 
 /**
  * Class models a graphical installer.
@@ -34,7 +34,7 @@ import components.JarInstaller.InstallType;
  * @author kieransherman
  *
  */
-public class GraphicalUI extends JarInstallerUI implements ActionListener {
+public class GraphicalUI extends SwingInstallerUI {
 	
 	private Thread shutdownHook;
 	
@@ -54,6 +54,7 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 
 	protected JProgressBar progressBar;
 	protected JTextField progressField;
+	protected String statistics;
 	protected JTextField nameField;
 	protected JTextField finalField;
 	
@@ -72,9 +73,19 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 	
 	protected float textOpacity = 0.0f;
 	
-	protected BufferedImage check = loadImage("check.png");
-	protected BufferedImage folder = loadImage("folder.png");
-	protected BufferedImage jarfile = loadImage("jarfile.png");
+	protected String[] message = new String[0];
+	protected int messageStatus = -1;
+	
+	protected Timer animator;
+	protected FontMetrics metrics;
+	
+	private final AlphaComposite[] composites = new AlphaComposite[101];
+	
+	protected static final int ANIMATION_INTERVAL = 20;
+	
+	protected AsyncImage check = new AsyncImage("check.png");
+	protected AsyncImage folder = new AsyncImage("folder.png");
+	protected AsyncImage jarfile = new AsyncImage("jarfile.png");
 	
 	/**
 	 * Creates a new GraphicalUI with a JarInstaller reference.
@@ -85,6 +96,16 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 		super(installer);
 	}
 	
+	/**
+	 * Returns a new GraphicalUI.  The installer creates its interface through this method, so that
+	 * the class is only loaded if it is the interface chosen.
+	 * 
+	 * @param installer the JarInstaller.
+	 */
+	public static JarInstallerUI create(JarInstaller installer) {
+		return new GraphicalUI(installer);
+	}
+	
 	/**
 	 * Returns the directory selection panel.
 	 */
@@ -148,6 +169,7 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 				extractionDir = directoryField.getText()+File.separator;
 				textOpacity = 0.0f;
 				status++;
+				animate();
 			}
 		});
 
@@ -185,6 +207,22 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 		nameField.setMargin(new Insets(0, 10, 0, 10));
 		nameField.setBorder(BorderFactory.createMatteBorder(1, 1, 1, 1, light_gold));
 		nameField.setHorizontalAlignment(JTextField.CENTER);
+		nameField.getDocument().addDocumentListener(new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) {
+				changedUpdate(e);
+			}
+			
+			public void removeUpdate(DocumentEvent e) {
+				changedUpdate(e);
+			}
+			
+			public void changedUpdate(DocumentEvent e) {
+				if(status == 3) {
+					updateMessage();
+					panel.repaint();
+				}
+			}
+		});
 		
 		nameConfirmButton = new JButton("confirm");
 		nameConfirmButton.setForeground(light_gold);
@@ -208,6 +246,7 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 				finalField.setEnabled(true);
 				textOpacity = 0.0f;
 				status++;
+				animate();
 			}
 		});
 		
@@ -232,6 +271,7 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 				
 				textOpacity = 0.0f;
 				status--;
+				animate();
 			}
 		});
 		
@@ -293,16 +333,19 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 						try {
 							installer.setExtractionDir(extractionDir);
 							installer.setExtractionName(extractionName);
-							installer.install(InstallType.INCLUDE_ONLY, "files");
+							installer.install();
 						} catch (Exception e) {
 							installer.quit(e);
-							System.exit(1);
+							
+							if(!installer.isCancelled())
+								System.exit(1);
 						}
 					}
 				}.start();
 				
 				textOpacity = 0.0f;
 				status++;
+				animate();
 			}
 		});
 		
@@ -325,6 +368,7 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 				nameField.setEnabled(true);
 				
 				status--;
+				animate();
 			}
 		});
 		
@@ -447,90 +491,42 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 			public void paint(Graphics g) {
 				super.paint(g);
 				
+				Graphics2D g2 = (Graphics2D)g;
+				
 				g.setFont(tahoma);
 				g.setColor(light_gold);
-				
-				String str = (status-2)+"/3";
-				FontMetrics metrics = g.getFontMetrics(tahoma);
-				
-				int rows = ((GridLayout)this.getLayout()).getRows();
-				
-				if(selectY < this.getHeight()/rows*(status-2))
-					selectY += ((this.getHeight()/rows*(status-2))-selectY)/4+1;
-				else
-				if(selectY > this.getHeight()/rows*(status-2))
-					selectY -= (selectY-(this.getHeight()/rows*(status-2)))/4-1;
-				
 				g.drawLine(0, selectY, window.getWidth(), selectY);
 				
 				g.setColor(dark_gray);
 				g.fillRect(0, 0, this.getWidth(), selectY-1);
 				
-				g.setColor(Color.WHITE);
-				
-				if(status == 2) {
-					str = "";
-				} else if(status == 3) {
-					folderOpacity = 0.0f;
-					folderY = -40;
-					
-					str = "Writing to: "+extractionDir+nameField.getText()+"\n"+str;
-				} else if (status == 4) {
-					str = "Everything look okay?\n"+str;
-					
-					if(folderOpacity < 0.7f)
-						folderOpacity += 0.04f;
-					
-					if(folderY < 0)
-						folderY += (0-folderY)/4;
-					
-					((Graphics2D)g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, folderOpacity));
-					g.drawImage(folder, 105-(folderY/2), 0, 150+folderY, 150+folderY, null);
+				if(status == 4) {
+					g2.setComposite(getComposite(folderOpacity));
+					g.drawImage(folder.get(), 105-(folderY/2), 0, 150+folderY, 150+folderY, null);
 				} else if(status == 5) {
-					str = "Looks good! Just sit back and relax, we're installing your product now.";
-					
-					if(folderY < 50)
-						folderY += (50-folderY)/4;
-					
-					((Graphics2D)g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float)progressBar.getPercentComplete()));
-					g.drawImage(jarfile, 500-(int)(progressBar.getPercentComplete()*360), 40, 135, 135, null);
+					g2.setComposite(getComposite((float)progressBar.getPercentComplete()));
+					g.drawImage(jarfile.get(), 500-(int)(progressBar.getPercentComplete()*360), 40, 135, 135, null);
 
-					((Graphics2D)g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
-					g.drawImage(folder, 105-(folderY/2), 0, 150+folderY, 150+folderY, null);
+					g2.setComposite(AlphaComposite.SrcOver);
+					g.drawImage(folder.get(), 105-(folderY/2), 0, 150+folderY, 150+folderY, null);
 				} else if (status == 6) {
-					str = "All done!";
-					
-					if(checkOpacity < 0.7f)
-						checkOpacity += 0.04f;
-					
-					if(checkY < 0)
-						checkY += (0-checkY)/4;
-					
-					((Graphics2D)g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, .2f));
+					g2.setComposite(getComposite(.2f));
 					g.setColor(light_gold);
 					g.fillOval(205-(checkY/4), checkY+10-(checkY/4), 280+(checkY/2), 280+(checkY/2));
 					g.setColor(Color.WHITE);
 					g.drawOval(205-(checkY/4), checkY+10-(checkY/4), 280+(checkY/2), 280+(checkY/2));
 					
-					((Graphics2D)g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, checkOpacity));
-					g.drawImage(check, 195-(checkY/2), checkY-(checkY/2), 300+checkY, 300+checkY, null);
-					
-					((Graphics2D)g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
-					endFinishButton.setBackground(new Color(dark_gray.getRed()-(int)(checkOpacity*100)/4,
-							dark_gray.getBlue()-(int)(checkOpacity*100)/4, dark_gray.getGreen()-(int)(checkOpacity*100)/4+10));
-					
-					endCancelButton.setBackground(new Color(dark_gray.getRed()-(int)(checkOpacity*100)/4,
-							dark_gray.getBlue()-(int)(checkOpacity*100)/4, dark_gray.getGreen()-(int)(checkOpacity*100)/4+10));
+					g2.setComposite(getComposite(checkOpacity));
+					g.drawImage(check.get(), 195-(checkY/2), checkY-(checkY/2), 300+checkY, 300+checkY, null);
 				}
 				
-				if(textOpacity < 0.7f)
-					textOpacity += 0.04f;
+				if(metrics == null)
+					metrics = g.getFontMetrics(tahoma);
 				
 				g.setColor(Color.WHITE);
-				((Graphics2D)g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, textOpacity));
-				String [] split = str.split("\n");
-				for(int i = 0; i < split.length; i++)
-					g.drawString(split[i], (this.getWidth() - metrics.stringWidth(split[i])) / 2, selectY-(20*split.length)+20*i);
+				g2.setComposite(getComposite(textOpacity));
+				for(int i = 0; i < message.length; i++)
+					g.drawString(message[i], (this.getWidth() - metrics.stringWidth(message[i])) / 2, selectY-(20*message.length)+20*i);
 				
 				g.dispose();
 			}
@@ -563,10 +559,144 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 		super.window.add(getHeaderPanel(), BorderLayout.NORTH);
 		super.window.add(mainPanel, BorderLayout.CENTER);
 		super.window.setResizable(false);
+		reportFirstFrame("graphical");
 		super.window.setVisible(true);
 		
-		Timer render = new Timer(20, this);
-		render.start();
+		animator = new Timer(ANIMATION_INTERVAL, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				frame();
+			}
+		});
+		animate();
+	}
+	
+	/**
+	 * Runs animation frames until every transition has settled.
+	 */
+	protected void animate() {
+		if(!animator.isRunning())
+			animator.start();
+	}
+	
+	/**
+	 * Advances every transition by one frame.
+	 * 
+	 * @return true if anything moved, and another frame is needed.
+	 */
+	protected boolean advance() {
+		int rows = ((GridLayout)panel.getLayout()).getRows();
+		int targetY = panel.getHeight()/rows*(status-2);
+		
+		int lastSelectY = selectY, lastFolderY = folderY, lastCheckY = checkY;
+		float lastFolderOpacity = folderOpacity, lastCheckOpacity = checkOpacity, lastTextOpacity = textOpacity;
+		
+		if(selectY < targetY)
+			selectY += (targetY-selectY)/4+1;
+		else
+		if(selectY > targetY)
+			selectY -= (selectY-targetY)/4+1;
+		
+		if(status == 3) {
+			folderOpacity = 0.0f;
+			folderY = -40;
+		} else if(status == 4) {
+			folderOpacity = fadeIn(folderOpacity);
+			folderY = ease(folderY, 0);
+		} else if(status == 5) {
+			folderY = ease(folderY, 50);
+		} else if(status == 6) {
+			checkOpacity = fadeIn(checkOpacity);
+			checkY = ease(checkY, 0);
+			
+			if(checkOpacity != lastCheckOpacity) {
+				Color background = new Color(dark_gray.getRed()-(int)(checkOpacity*100)/4,
+						dark_gray.getBlue()-(int)(checkOpacity*100)/4, dark_gray.getGreen()-(int)(checkOpacity*100)/4+10);
+				
+				endFinishButton.setBackground(background);
+				endCancelButton.setBackground(background);
+			}
+		}
+		
+		textOpacity = fadeIn(textOpacity);
+		
+		if(status != messageStatus) {
+			updateMessage();
+			requestImages();
+		}
+		
+		return selectY != lastSelectY || folderY != lastFolderY || checkY != lastCheckY || folderOpacity != lastFolderOpacity 
+				|| checkOpacity != lastCheckOpacity || textOpacity != lastTextOpacity;
+	}
+	
+	/**
+	 * Begins decoding the images of the next step, so that they are ready when it is shown.  Images
+	 * that no step has needed yet are never decoded.
+	 */
+	protected void requestImages() {
+		Runnable repaint = new Runnable() {
+			public void run() {
+				animate();
+			}
+		};
+		
+		if(status >= 3)
+			folder.request(repaint);
+		if(status >= 4)
+			jarfile.request(repaint);
+		if(status >= 5)
+			check.request(repaint);
+	}
+	
+	/**
+	 * Returns a position moved a quarter of the way towards a target it has not reached yet.
+	 */
+	private static int ease(int value, int target) {
+		return value < target ? value+(target-value)/4 : value;
+	}
+	
+	/**
+	 * Returns an opacity faded in by one frame.
+	 */
+	private static float fadeIn(float opacity) {
+		return opacity < 0.7f ? opacity+0.04f : opacity;
+	}
+	
+	/**
+	 * Returns the composite that draws with an opacity, rounded to the nearest hundredth.  The
+	 * composites are created once and reused by every frame.
+	 */
+	protected AlphaComposite getComposite(float alpha) {
+		int index = Math.max(0, Math.min(100, Math.round(alpha*100)));
+		
+		if(composites[index] == null)
+			composites[index] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, index/100f);
+		
+		return composites[index];
+	}
+	
+	/**
+	 * Rebuilds the lines of the message shown above the current step.
+	 */
+	protected void updateMessage() {
+		String str = (status-2)+"/3";
+		
+		if(status == 2)
+			str = "";
+		else
+		if(status == 3)
+			str = "Writing to: "+extractionDir+nameField.getText()+"\n"+str;
+		else
+		if(status == 4)
+			str = "Everything look okay?\n"+str;
+		else
+		if(status == 5)
+			str = "Looks good! Just sit back and relax, we're installing your product now.";
+		else
+		if(status == 6)
+			str = "All done!";
+		
+		message = str.split("\n");
+		messageStatus = status;
 	}
 	
 	/**
@@ -602,6 +732,7 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 				endFinishButton.setBorder(BorderFactory.createMatteBorder(1, 1, 1, 1, light_gold));
 				endCancelButton.setText("uninstall");
 				status++;
+				animate();
 			}
 		}.start();
 	}
@@ -633,19 +764,42 @@ public class GraphicalUI extends JarInstallerUI implements ActionListener {
 	}
 
 	/**
-	 * Increments the progress bar by value.
+	 * Sets the value of the progress bar.
 	 */
 	@Override
-	protected void incrementProgress(int value) {
-		progressBar.setValue(progressBar.getValue()+value);
+	protected void setProgress(int value) {
+		progressBar.setValue(value);
+		progressBar.setString(getProgressString());
+		
+		if(status == 5)
+			panel.repaint();
 	}
-
+	
 	/**
-	 * Reapints the window.
+	 * Shows the throughput and the time remaining next to the progress.
 	 */
 	@Override
-	public void actionPerformed(ActionEvent e) {
-		window.repaint();
+	protected void setStatistics(double bytesPerSecond, long secondsRemaining) {
+		statistics = formatStatistics(bytesPerSecond, secondsRemaining);
+		progressBar.setString(getProgressString());
+	}
+	
+	/**
+	 * Returns the text painted on the progress bar.
+	 */
+	private String getProgressString() {
+		String percent = (int)(progressBar.getPercentComplete()*100)+"%";
+		return statistics == null ? percent : percent+"  ("+statistics+")";
+	}
+
+	/**
+	 * Advances the animation by one frame and repaints it, stopping once nothing moves.
+	 */
+	protected void frame() {
+		if(!advance())
+			animator.stop();
+		
+		panel.repaint();
 	}
 
 }
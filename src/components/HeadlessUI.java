@@ -0,0 +1,222 @@
+package components;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+import components.InstallOptions.ProgressFormat;
+
+/**
+ * Class models an installer without a window, for machines and containers without a display.  The
+ * installation is configured by {@link InstallOptions}, and its progress is reported on standard
+ * output as plain text or as one JSON object per line.  It never loads Swing or AWT.
+ * 
+ * @author kieransherman
+ *
+ */
+public class HeadlessUI extends JarInstallerUI {
+
+	protected static final int SAMPLE_INTERVAL = 100;
+	
+	private final InstallOptions options;
+	private final PrintStream out;
+	private final boolean json;
+	
+	private Thread sampler;
+	private volatile boolean sampling;
+	private int maximum = PROGRESS_SCALE;
+	private int value;
+	
+	/**
+	 * Creates a new HeadlessUI object with a JarInstaller reference.  When progress is reported as
+	 * JSON, everything else the installer prints is sent to standard error, so that standard output
+	 * only holds JSON.
+	 * 
+	 * @param installer the JarInstaller.
+	 * @param options the options of the installation.
+	 */
+	public HeadlessUI(JarInstaller installer, InstallOptions options) {
+		super(installer);
+		
+		this.options = options;
+		this.out = System.out;
+		this.json = options.getProgressFormat() == ProgressFormat.JSON;
+		
+		if(json)
+			System.setOut(System.err);
+	}
+	
+	/**
+	 * Returns a new HeadlessUI.  The installer creates its interface through this method, so that
+	 * the class is only loaded if it is the interface chosen.
+	 * 
+	 * @param installer the JarInstaller.
+	 * @param options the options of the installation.
+	 */
+	public static JarInstallerUI create(JarInstaller installer, InstallOptions options) {
+		return new HeadlessUI(installer, options);
+	}
+	
+	/**
+	 * Runs the installation described by the options.
+	 */
+	@Override
+	protected void load() {
+		installer.setExtractionDir(options.getTarget());
+		installer.setExtractionName("."+options.getName());
+		
+		try {
+			installer.install();
+			awaitSampler();
+		} catch (Exception e) {
+			sampling = false;
+			if(sampler != null)
+				sampler.interrupt();
+			awaitSampler();
+			
+			if(installProgress != null)
+				sample();
+			
+			installer.quit(e);
+			return;
+		}
+		
+		Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		
+		if(!installer.finish())
+			showMessage("Installer", "Did not finish installation cleanly. Check directory for "+installer.tempJarFileName, true);
+	}
+	
+	/**
+	 * Returns true because there is nothing to confirm.
+	 */
+	@Override
+	protected boolean display() {
+		return true;
+	}
+	
+	/**
+	 * Sets the shutdown hook.
+	 */
+	@Override
+	protected void setShutdownHook(Thread shutdownHook) {
+		this.shutdownHook = shutdownHook;
+	}
+	
+	/**
+	 * Reports that the installation finished.
+	 */
+	@Override
+	protected void setFinishable(boolean enabled) {
+		if(json)
+			out.println("{\"event\":\"finished\"}");
+	}
+	
+	/**
+	 * Logs a line of text.
+	 */
+	@Override
+	protected void log(String line) {
+		if(json)
+			out.println("{\"event\":\"log\",\"message\":"+Json.quote(line)+"}");
+		else
+			out.println(line);
+	}
+	
+	/**
+	 * Does nothing, because every line worth reporting is also logged.
+	 */
+	@Override
+	protected void setText(String line) {
+	}
+	
+	/**
+	 * Sets the maximum progress.
+	 */
+	@Override
+	protected void setMaximumProgress(int value) {
+		this.maximum = value;
+	}
+	
+	/**
+	 * Sets the progress, which is reported along with the next statistics.
+	 */
+	@Override
+	protected void setProgress(int value) {
+		this.value = value;
+	}
+	
+	/**
+	 * Reports the progress, the throughput and the time remaining.
+	 */
+	@Override
+	protected void setStatistics(double bytesPerSecond, long secondsRemaining) {
+		String startup = StartupClock.firstFrame("headless");
+		if(startup != null)
+			log(startup);
+		
+		double percent = maximum > 0 ? value*100.0/maximum : 0;
+		
+		if(json)
+			out.println(String.format(Locale.ROOT, "{\"event\":\"progress\",\"percent\":%.1f,\"bytesDone\":%d,\"bytesPerSecond\":%.0f,\"secondsRemaining\":%d}", 
+					percent, installProgress.getBytesDone(), bytesPerSecond, secondsRemaining));
+		else
+			out.println(String.format("[%3d%%] %s", (int)percent, formatStatistics(bytesPerSecond, secondsRemaining)));
+	}
+	
+	/**
+	 * Reports a message, on standard error if it is an error and progress is reported as text.
+	 */
+	@Override
+	protected void showMessage(String title, String message, boolean error) {
+		if(json)
+			out.println("{\"event\":\""+(error ? "error" : "message")+"\",\"title\":"+Json.quote(title)+",\"message\":"+Json.quote(message)+"}");
+		else
+			(error ? System.err : out).println(title.toUpperCase()+": "+message.replace('\n', ' '));
+	}
+	
+	/**
+	 * Starts sampling on a daemon thread.
+	 */
+	@Override
+	protected void startSampler() {
+		sampling = true;
+		sampler = new Thread("installer-progress") {
+			public void run() {
+				while(sampling) {
+					sample();
+					
+					try {
+						Thread.sleep(SAMPLE_INTERVAL);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		};
+		sampler.setDaemon(true);
+		sampler.start();
+	}
+	
+	/**
+	 * Stops sampling.
+	 */
+	@Override
+	protected void stopSampler() {
+		sampling = false;
+	}
+	
+	/**
+	 * Waits until the sampler has reported everything.
+	 */
+	private void awaitSampler() {
+		if(sampler == null)
+			return;
+		
+		try {
+			sampler.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
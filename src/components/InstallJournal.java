@@ -0,0 +1,288 @@
+package components;
+
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class models an append-only journal of every directory and file an installation creates.  Files
+ * are recorded before they are written and directories right after they are created, so that a
+ * failed or cancelled installation can be rolled back by replaying the journal in reverse, touching
+ * only what the installation itself produced.  A file the installation replaces is moved aside to
+ * a backup first, and moved back when the installation is rolled back.  The journal and the backups
+ * are removed once the installation is committed.
+ *
+ * @author kieransherman
+ *
+ */
+public class InstallJournal {
+
+	private static final char DIRECTORY = 'D';
+	private static final char FILE = 'F';
+	private static final char REPLACED = 'R';
+	
+	/**
+	 * The suffix of the backup a replaced file is moved to.
+	 */
+	public static final String BACKUP_SUFFIX = ".installer-backup";
+	
+	private final Path file;
+	
+	private FileChannel channel;
+	private volatile boolean committed;
+	
+	/**
+	 * Creates a new InstallJournal stored in a file.  The file is not created until the first
+	 * record is appended.
+	 *
+	 * @param file the journal file.
+	 */
+	public InstallJournal(Path file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Returns the journal file.
+	 */
+	public Path getFile() {
+		return file;
+	}
+	
+	/**
+	 * Returns true if the journal file exists, which means an installation was not committed.
+	 */
+	public boolean exists() {
+		return Files.exists(file);
+	}
+	
+	/**
+	 * Records a file that is about to be created.
+	 */
+	public void file(Path path) throws IOException {
+		append(FILE, path);
+	}
+	
+	/**
+	 * Records a file that is about to be created or replaced.  An existing file is moved to its
+	 * backup, unless an earlier attempt at the installation already backed it up, in which case the
+	 * file is the unfinished copy that attempt wrote and is removed.  The record is forced to disk
+	 * before the file is moved, so that a rollback after a crash still knows to restore it.
+	 */
+	public void replace(Path path) throws IOException {
+		if(!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+			file(path);
+			return;
+		}
+		
+		append(REPLACED, path);
+		sync();
+		
+		Path backup = getBackup(path);
+		
+		if(Files.exists(backup, LinkOption.NOFOLLOW_LINKS))
+			Files.delete(path);
+		else
+			Files.move(path, backup);
+	}
+	
+	/**
+	 * Returns the backup a replaced file is moved to.
+	 */
+	private static Path getBackup(Path path) {
+		return path.resolveSibling(path.getFileName()+BACKUP_SUFFIX);
+	}
+	
+	/**
+	 * Records a directory that was created.
+	 */
+	public void directory(Path path) throws IOException {
+		append(DIRECTORY, path);
+	}
+	
+	/**
+	 * Creates a directory and any missing parents, recording each one that is created.
+	 */
+	public void createDirectories(Path dir) throws IOException {
+		List<Path> missing = new ArrayList<Path>();
+		
+		for(Path parent = dir.toAbsolutePath(); parent != null && !Files.isDirectory(parent); parent = parent.getParent())
+			missing.add(0, parent);
+		
+		for(Path parent : missing) {
+			try {
+				Files.createDirectory(parent);
+				directory(parent);
+				InstallerEvents.directoryCreated(parent);
+			} catch (FileAlreadyExistsException e) {
+				if(!Files.isDirectory(parent))
+					throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Commits the installation, removing the journal and then the backups of the files it replaced.
+	 *
+	 * @return the backups that could not be removed.
+	 */
+	public synchronized List<Path> commit() throws IOException {
+		close();
+		
+		List<String> records = readRecords();
+		List<Path> failures = new ArrayList<Path>();
+		
+		Files.deleteIfExists(file);
+		committed = true;
+		
+		for(String record : records) {
+			if(record.charAt(0) != REPLACED)
+				continue;
+			
+			Path backup = getBackup(Paths.get(record.substring(2)));
+			
+			try {
+				Files.deleteIfExists(backup);
+			} catch (IOException e) {
+				failures.add(backup);
+			}
+		}
+		
+		return failures;
+	}
+	
+	/**
+	 * Returns true if the installation was committed.
+	 */
+	public boolean isCommitted() {
+		return committed;
+	}
+	
+	/**
+	 * Removes everything recorded in the journal, and then the journal itself.  The files are
+	 * removed first, in parallel, since none depends on another; then replaced files are restored
+	 * from their backups and directories removed, newest first.  Directories are only removed once
+	 * they are empty, so content that the installation did not create is left in place.
+	 *
+	 * @return the paths that could not be removed.
+	 */
+	public synchronized List<Path> rollback() {
+		List<Path> failures = new ArrayList<Path>();
+		
+		if(committed)
+			return failures;
+		
+		List<String> records;
+		try {
+			close();
+			records = readRecords();
+		} catch (IOException e) {
+			failures.add(file);
+			return failures;
+		}
+		
+		List<Path> files = new ArrayList<Path>();
+		for(String record : records)
+			if(record.charAt(0) == FILE)
+				files.add(Paths.get(record.substring(2)));
+		
+		failures.addAll(new DirectoryRemover().removeFiles(files).getFailures());
+		
+		for(int i = records.size()-1; i >= 0; i--) {
+			String record = records.get(i);
+			Path path = Paths.get(record.substring(2));
+			
+			if(record.charAt(0) == FILE)
+				continue;
+			
+			try {
+				if(record.charAt(0) == REPLACED) {
+					Path backup = getBackup(path);
+					
+					if(Files.exists(backup, LinkOption.NOFOLLOW_LINKS))
+						Files.move(backup, path, StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					Files.deleteIfExists(path);
+				}
+			} catch (DirectoryNotEmptyException e) {
+			} catch (IOException e) {
+				failures.add(path);
+			}
+		}
+		
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			failures.add(file);
+		}
+		
+		return failures;
+	}
+	
+	/**
+	 * Returns the records of the journal, oldest first, or none if there is no journal.
+	 */
+	private List<String> readRecords() throws IOException {
+		List<String> records = new ArrayList<String>();
+		
+		try {
+			for(String record : Files.readAllLines(file, StandardCharsets.UTF_8))
+				if(record.length() >= 3)
+					records.add(record);
+		} catch (NoSuchFileException e) {
+			return records;
+		}
+		
+		return records;
+	}
+	
+	/**
+	 * Appends a record to the journal.
+	 */
+	private void append(char type, Path path) throws IOException {
+		byte[] record = (type+"\t"+path.toAbsolutePath()+"\n").getBytes(StandardCharsets.UTF_8);
+		open().write(ByteBuffer.wrap(record));
+	}
+	
+	/**
+	 * Forces the records appended so far to the storage device.
+	 */
+	private void sync() throws IOException {
+		open().force(false);
+	}
+	
+	/**
+	 * Returns the channel records are appended through, opening it if needed.
+	 */
+	private synchronized FileChannel open() throws IOException {
+		if(committed)
+			throw new IOException("Installation already committed.");
+		if(channel == null)
+			channel = FileChannel.open(file, CREATE, WRITE, APPEND);
+		
+		return channel;
+	}
+	
+	/**
+	 * Closes the journal file.
+	 */
+	private synchronized void close() throws IOException {
+		if(channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+}
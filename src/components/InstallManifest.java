@@ -0,0 +1,274 @@
+package components;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Class models a record of every entry written by an installation: its size, its CRC-32 and the
+ * modification time of the file it was written to.  The manifest is stored next to run.jar so that
+ * a later installation can skip the entries that are already on disk and unchanged.
+ * <p>
+ * A manifest can also be opened as a checkpoint, in which case every record is appended to its
+ * file and forced to disk as soon as it is added, so that an interrupted installation can be
+ * resumed.
+ *
+ * @author kieransherman
+ *
+ */
+public class InstallManifest {
+
+	public static final String FILE_NAME = ".manifest";
+	public static final String CHECKPOINT_FILE_NAME = ".checkpoint";
+	
+	private static final int MAGIC = 0x4A494D32;
+	
+	private final Map<String, Record> records;
+	
+	private long fingerprint;
+	private DataOutputStream checkpoint;
+	private FileDescriptor checkpointDescriptor;
+	
+	/**
+	 * Creates a new, empty InstallManifest.
+	 */
+	public InstallManifest() {
+		this.records = new ConcurrentHashMap<String, Record>();
+	}
+	
+	/**
+	 * Returns the manifest stored in a file, or an empty manifest if the file does not exist or
+	 * cannot be read.  A truncated record at the end of the file is ignored.
+	 */
+	public static InstallManifest load(Path file) {
+		InstallManifest manifest = new InstallManifest();
+		
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(in.readInt() != MAGIC)
+				return manifest;
+			
+			manifest.fingerprint = in.readLong();
+			
+			while(true) {
+				String name = in.readUTF();
+				long size = in.readLong();
+				int crc = in.readInt();
+				long modified = in.readLong();
+				
+				manifest.records.put(name, new Record(size, crc, modified));
+			}
+		} catch (EOFException | NoSuchFileException e) {
+			return manifest;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return manifest;
+		}
+	}
+	
+	/**
+	 * Returns the number of entries in the manifest.
+	 */
+	public int size() {
+		return records.size();
+	}
+	
+	/**
+	 * Returns the fingerprint of the payload the manifest was recorded from.
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+	
+	/**
+	 * Sets the fingerprint of the payload the manifest is recorded from.
+	 */
+	public void setFingerprint(long fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+	
+	/**
+	 * Opens the manifest as a checkpoint, appending every record added from now on to a file.
+	 * 
+	 * @param file the checkpoint file.
+	 * @param resume true to keep the records already in the file, false to start it over.
+	 * @throws IOException the file could not be opened.
+	 */
+	public synchronized void openCheckpoint(Path file, boolean resume) throws IOException {
+		boolean append = resume && Files.exists(file) && Files.size(file) > 0;
+		FileOutputStream out = new FileOutputStream(file.toFile(), append);
+		
+		checkpoint = new DataOutputStream(new BufferedOutputStream(out));
+		checkpointDescriptor = out.getFD();
+		
+		if(!append) {
+			checkpoint.writeInt(MAGIC);
+			checkpoint.writeLong(fingerprint);
+			
+			for(Map.Entry<String, Record> entry : records.entrySet())
+				write(checkpoint, entry.getKey(), entry.getValue());
+		}
+		
+		syncCheckpoint();
+	}
+	
+	/**
+	 * Flushes the checkpoint and forces it to the storage device, so that its records survive a
+	 * crash of the system as well as of the installer.  The file is written through a stream
+	 * rather than a channel, so that a worker interrupted by a cancel can still record the entry
+	 * it finished.
+	 */
+	private void syncCheckpoint() throws IOException {
+		checkpoint.flush();
+		checkpointDescriptor.sync();
+	}
+	
+	/**
+	 * Closes the checkpoint file, if the manifest was opened as one.
+	 */
+	public synchronized void closeCheckpoint() throws IOException {
+		if(checkpoint != null) {
+			checkpoint.close();
+			checkpoint = null;
+			checkpointDescriptor = null;
+		}
+	}
+	
+	/**
+	 * Records an entry that was written to a file.
+	 *
+	 * @param name the name of the entry in the archive.
+	 * @param size the entry's uncompressed size.
+	 * @param crc the entry's CRC-32.
+	 * @param file the file the entry was written to.
+	 * @throws IOException the file's attributes could not be read.
+	 */
+	public void put(String name, long size, long crc, Path file) throws IOException {
+		Record record = new Record(size, (int)crc, Files.getLastModifiedTime(file).toMillis());
+		records.put(name, record);
+		
+		if(checkpoint != null) {
+			synchronized(this) {
+				if(checkpoint != null) {
+					write(checkpoint, name, record);
+					syncCheckpoint();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if an entry was recorded with the same size and CRC-32, and the file it was
+	 * written to still exists with the recorded size and modification time.
+	 */
+	public boolean isCurrent(String name, long size, long crc, Path file) {
+		Record record = records.get(name);
+		if(record == null || record.size != size || record.crc != (int)crc)
+			return false;
+		
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			return attributes.isRegularFile() && attributes.size() == size &&
+					attributes.lastModifiedTime().toMillis() == record.modified;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns true if an entry was recorded with the same size and CRC-32, and the file it was
+	 * written to still holds contents with that size and CRC-32.  Unlike {@link #isCurrent}, the
+	 * file is read back to verify it.
+	 */
+	public boolean isIntact(String name, long size, long crc, Path file) {
+		Record record = records.get(name);
+		if(record == null || record.size != size || record.crc != (int)crc)
+			return false;
+		
+		try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(in.size() != size)
+				return false;
+			
+			CRC32 checksum = new CRC32();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(64*1024);
+			
+			while(in.read(buffer) != -1) {
+				buffer.flip();
+				checksum.update(buffer);
+				buffer.clear();
+			}
+			
+			return checksum.getValue() == crc;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Copies the record of an entry from another manifest, if it has one.
+	 */
+	public void copy(InstallManifest manifest, String name) {
+		Record record = manifest.records.get(name);
+		if(record != null)
+			records.put(name, record);
+	}
+	
+	/**
+	 * Writes the manifest to a file, replacing it atomically.
+	 */
+	public void save(Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName()+".tmp");
+		
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeLong(fingerprint);
+			
+			for(Map.Entry<String, Record> entry : records.entrySet())
+				write(out, entry.getKey(), entry.getValue());
+		}
+		
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Writes a single record.
+	 */
+	private static void write(DataOutputStream out, String name, Record record) throws IOException {
+		out.writeUTF(name);
+		out.writeLong(record.size);
+		out.writeInt(record.crc);
+		out.writeLong(record.modified);
+	}
+	
+	/**
+	 * Class models the record of a single entry.
+	 */
+	private static class Record {
+		
+		private final long size;
+		private final int crc;
+		private final long modified;
+		
+		private Record(long size, int crc, long modified) {
+			this.size = size;
+			this.crc = crc;
+			this.modified = modified;
+		}
+	}
+
+}
@@ -0,0 +1,345 @@
+package components;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import components.JarInstaller.InstallType;
+import components.JarInstaller.TaskOrder;
+import components.JarInstaller.Verification;
+
+/**
+ * Class models the options of an installation given on the command line.  Options take the form
+ * <code>--name value</code> or <code>--flag</code>; arguments that do not start with "--" are
+ * ignored.
+ * 
+ * @author kieransherman
+ *
+ */
+public class InstallOptions {
+
+	public enum ProgressFormat {
+		TEXT, JSON;
+	}
+	
+	private boolean help;
+	private boolean headless;
+	private String target;
+	private String name;
+	private EntryFilter filter;
+	private List<String> payloads;
+	private int workerCount;
+	private long batchThreshold;
+	private long preallocationThreshold;
+	private TaskOrder taskOrder;
+	private Verification verification;
+	private ProgressFormat progressFormat;
+	private boolean streaming;
+	private boolean incremental;
+	private boolean deduplicate;
+	private boolean resumable;
+	
+	/**
+	 * Creates a new InstallOptions with the defaults: the textgame folder on the user's Desktop,
+	 * only the entries starting with "files", one worker per processor and text progress.
+	 */
+	public InstallOptions() {
+		this.target = System.getProperty("user.home")+File.separator+"Desktop";
+		this.name = "textgame";
+		this.filter = EntryFilter.of(InstallType.INCLUDE_ONLY, "files");
+		this.payloads = new ArrayList<String>();
+		this.workerCount = Runtime.getRuntime().availableProcessors();
+		this.taskOrder = TaskOrder.BALANCED;
+		this.verification = Verification.CRC32;
+		this.batchThreshold = JarInstaller.DEFAULT_BATCH_THRESHOLD;
+		this.preallocationThreshold = EntryWriter.DEFAULT_PREALLOCATION_THRESHOLD;
+		this.progressFormat = ProgressFormat.TEXT;
+	}
+	
+	/**
+	 * Returns the options given on a command line.
+	 * 
+	 * @param args the command line arguments.
+	 * @throws IllegalArgumentException an option is unknown or has an invalid value.
+	 */
+	public static InstallOptions parse(String[] args) {
+		InstallOptions options = new InstallOptions();
+		List<String> includes = new ArrayList<String>();
+		List<String> excludes = new ArrayList<String>();
+		boolean all = false;
+		
+		for(int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			
+			if(!arg.startsWith("--"))
+				continue;
+			
+			switch(arg) {
+				case "--help":
+					options.help = true;
+					break;
+				
+				case "--headless":
+					options.headless = true;
+					break;
+				
+				case "--target":
+					options.target = value(args, ++i, arg);
+					break;
+				
+				case "--name":
+					options.name = value(args, ++i, arg);
+					break;
+				
+				case "--include":
+					includes.add(value(args, ++i, arg));
+					break;
+				
+				case "--exclude":
+					excludes.add(value(args, ++i, arg));
+					break;
+				
+				case "--all":
+					all = true;
+					break;
+				
+				case "--payload":
+					options.payloads.add(value(args, ++i, arg));
+					break;
+				
+				case "--workers":
+					try {
+						options.workerCount = Integer.parseInt(value(args, ++i, arg));
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("--workers needs a number.");
+					}
+					
+					if(options.workerCount < 1)
+						throw new IllegalArgumentException("--workers needs at least 1 worker.");
+					break;
+				
+				case "--batch-threshold":
+					try {
+						options.batchThreshold = Long.parseLong(value(args, ++i, arg));
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("--batch-threshold needs a number of bytes.");
+					}
+					
+					if(options.batchThreshold < 0)
+						throw new IllegalArgumentException("--batch-threshold cannot be negative.");
+					break;
+				
+				case "--preallocate-threshold":
+					try {
+						options.preallocationThreshold = Long.parseLong(value(args, ++i, arg));
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("--preallocate-threshold needs a number of bytes.");
+					}
+					
+					if(options.preallocationThreshold < 0)
+						throw new IllegalArgumentException("--preallocate-threshold cannot be negative.");
+					break;
+				
+				case "--order":
+					try {
+						options.taskOrder = TaskOrder.valueOf(value(args, ++i, arg).toUpperCase().replace('-', '_'));
+					} catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException("--order needs archive, largest-first, directory or balanced.");
+					}
+					break;
+				
+				case "--verify":
+					try {
+						options.verification = Verification.valueOf(value(args, ++i, arg).toUpperCase().replace("-", ""));
+					} catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException("--verify needs none, crc32 or sha256.");
+					}
+					break;
+				
+				case "--progress":
+					try {
+						options.progressFormat = ProgressFormat.valueOf(value(args, ++i, arg).toUpperCase());
+					} catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException("--progress needs text or json.");
+					}
+					break;
+				
+				case "--streaming":
+					options.streaming = true;
+					break;
+				
+				case "--incremental":
+					options.incremental = true;
+					break;
+				
+				case "--deduplicate":
+					options.deduplicate = true;
+					break;
+				
+				case "--resumable":
+					options.resumable = true;
+					break;
+				
+				default:
+					throw new IllegalArgumentException("Unknown option: "+arg);
+			}
+		}
+		
+		// The default include only gives way to includes of its own, or to --all.
+		if(!includes.isEmpty() || all)
+			options.filter = new EntryFilter();
+		
+		for(String include : includes)
+			options.filter.include(include);
+		for(String exclude : excludes)
+			options.filter.exclude(exclude);
+		
+		return options;
+	}
+	
+	/**
+	 * Returns the value of an option.
+	 */
+	private static String value(String[] args, int i, String option) {
+		if(i >= args.length || args[i].startsWith("--"))
+			throw new IllegalArgumentException(option+" needs a value.");
+		
+		return args[i];
+	}
+	
+	/**
+	 * Returns the command line usage.
+	 */
+	public static String usage() {
+		return "Usage: java -jar installer.jar [options]\n"+
+				"  --help                   show this message\n"+
+				"  --headless               install without a window, reporting progress on stdout\n"+
+				"  --target <dir>           the directory to install to (default: ~/Desktop)\n"+
+				"  --name <folder>          the folder to install into (default: textgame)\n"+
+				"  --include <rule>         only install entries matching a rule (default: files)\n"+
+				"  --exclude <rule>         do not install entries matching a rule\n"+
+				"  --all                    install every entry that is not excluded\n"+
+				"                           rules are prefixes, or globs with ?, *, ** and **/; the\n"+
+				"                           include and exclude options can be given many times\n"+
+				"  --payload <jar>          also install a bundled .jar into a folder named after it\n"+
+				"  --workers <n>            the number of extraction workers (default: one per processor)\n"+
+				"  --order <order>          the order entries are extracted in: archive, largest-first,\n"+
+				"                           directory or balanced (default: balanced)\n"+
+				"  --batch-threshold <n>    extract entries smaller than n bytes in batches, 0 for none\n"+
+				"                           (default: 16384)\n"+
+				"  --preallocate-threshold <n>\n"+
+				"                           size files of n bytes or more before writing them, 0 for\n"+
+				"                           none (default: 1048576)\n"+
+				"  --verify <check>         check every entry as it is written: none, crc32, or sha256\n"+
+				"                           against the payload manifest's digests (default: crc32)\n"+
+				"  --progress text|json     the format of headless progress (default: text)\n"+
+				"  --streaming              extract in a single streaming pass\n"+
+				"  --incremental            only rewrite entries that changed since the last installation\n"+
+				"  --deduplicate            hard-link entries with identical contents\n"+
+				"  --resumable              keep completed entries of a cancelled installation";
+	}
+	
+	/**
+	 * Applies the options that tune the installation to an installer.
+	 */
+	public void apply(JarInstaller installer) {
+		installer.setWorkerCount(workerCount);
+		installer.setTaskOrder(taskOrder);
+		installer.setVerification(verification);
+		installer.setBatchThreshold(batchThreshold);
+		installer.setPreallocationThreshold(preallocationThreshold);
+		installer.setFilter(filter);
+		
+		for(String payload : payloads)
+			installer.addPayload(payload);
+		installer.setStreaming(streaming);
+		installer.setIncremental(incremental);
+		installer.setDeduplicate(deduplicate);
+		installer.setResumable(resumable);
+	}
+	
+	/**
+	 * Returns true if the usage was asked for.
+	 */
+	public boolean isHelp() {
+		return help;
+	}
+	
+	/**
+	 * Returns true if the installation runs without a window.
+	 */
+	public boolean isHeadless() {
+		return headless;
+	}
+	
+	/**
+	 * Returns the directory to install to.
+	 */
+	public String getTarget() {
+		return target;
+	}
+	
+	/**
+	 * Returns the folder to install into.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the filter that decides which entries are installed.
+	 */
+	public EntryFilter getFilter() {
+		return filter;
+	}
+	
+	/**
+	 * Returns the additional .jar files to install.
+	 */
+	public List<String> getPayloads() {
+		return payloads;
+	}
+	
+	/**
+	 * Returns the number of extraction workers.
+	 */
+	public int getWorkerCount() {
+		return workerCount;
+	}
+	
+	/**
+	 * Returns the size below which entries are extracted in batches.
+	 */
+	public long getBatchThreshold() {
+		return batchThreshold;
+	}
+	
+	/**
+	 * Returns the checks made on every entry as it is written.
+	 */
+	public Verification getVerification() {
+		return verification;
+	}
+	
+	/**
+	 * Returns the size from which entries' files are preallocated.
+	 */
+	public long getPreallocationThreshold() {
+		return preallocationThreshold;
+	}
+	
+	/**
+	 * Returns the order entries are extracted in.
+	 */
+	public TaskOrder getTaskOrder() {
+		return taskOrder;
+	}
+	
+	/**
+	 * Returns the format headless progress is reported in.
+	 */
+	public ProgressFormat getProgressFormat() {
+		return progressFormat;
+	}
+
+}
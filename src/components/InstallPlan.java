@@ -0,0 +1,217 @@
+package components;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+import components.JarInstaller.TaskOrder;
+
+/**
+ * Class models the plan of an installation, built in a single walk over the archive's entries
+ * before anything is written: the resolved target of every entry to extract, and the set of
+ * directories they need.  The directories are created once, parents first, instead of being
+ * checked again for every entry.
+ *
+ * @author kieransherman
+ *
+ */
+public class InstallPlan {
+
+	/**
+	 * The size from which the balanced order treats an entry as large.
+	 */
+	public static final long LARGE_ENTRY_SIZE = 1024*1024;
+	
+	private final Path root;
+	private final Set<Path> directories;
+	private final Path[] targets;
+	
+	private int[] entries;
+	private int size;
+	
+	/**
+	 * Creates a new, empty InstallPlan.
+	 *
+	 * @param root the directory the entries are extracted to.
+	 * @param entryCount the number of entries in the archive.
+	 */
+	public InstallPlan(Path root, int entryCount) {
+		this.root = root.normalize();
+		this.directories = new HashSet<Path>();
+		this.targets = new Path[entryCount];
+		this.entries = new int[Math.max(16, Math.min(entryCount, 1024))];
+	}
+	
+	/**
+	 * Returns the target of a file name within the root directory.
+	 *
+	 * @throws ZipException the file name is absolute or climbs out of the root directory.
+	 */
+	public Path resolve(String fileName) throws ZipException {
+		return resolve(root, fileName);
+	}
+	
+	/**
+	 * Returns the target of a file name within a directory.
+	 *
+	 * @param root the directory, normalized.
+	 * @param fileName the file name of an entry.
+	 * @throws ZipException the file name is absolute or climbs out of the directory.
+	 */
+	public static Path resolve(Path root, String fileName) throws ZipException {
+		Path target = root.resolve(fileName).normalize();
+		
+		if(!target.startsWith(root) || target.equals(root))
+			throw new ZipException("Entry is outside the installation folder: "+fileName);
+		
+		return target;
+	}
+	
+	/**
+	 * Adds an entry to the plan, along with every directory between its target and the root.
+	 *
+	 * @param entry the index of the entry in the archive.
+	 * @param target the file the entry is written to.
+	 */
+	public void add(int entry, Path target) {
+		if(size == entries.length)
+			entries = Arrays.copyOf(entries, size*2);
+		
+		entries[size++] = entry;
+		targets[entry] = target;
+		
+		for(Path dir = target.getParent(); dir != null && !dir.equals(root) && directories.add(dir); dir = dir.getParent());
+	}
+	
+	/**
+	 * Returns the number of entries in the plan.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the indices of the planned entries, in archive order.
+	 */
+	public int[] getEntries() {
+		return Arrays.copyOf(entries, size);
+	}
+	
+	/**
+	 * Returns the indices of the planned entries in the order the workers should extract them.
+	 *
+	 * @param order the order to extract the entries in.
+	 * @param jar the archive, for the sizes of the entries.
+	 */
+	public int[] getEntries(TaskOrder order, MappedJarReader jar) {
+		if(order == TaskOrder.ARCHIVE)
+			return getEntries();
+		
+		Integer[] ordered = new Integer[size];
+		for(int i = 0; i < size; i++)
+			ordered[i] = entries[i];
+		
+		Arrays.sort(ordered, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int byOrder = 0;
+				
+				if(order == TaskOrder.LARGEST_FIRST)
+					byOrder = Long.compare(jar.getSize(b), jar.getSize(a));
+				else
+				if(order == TaskOrder.DIRECTORY)
+					byOrder = compareDirectories(a, b);
+				else
+				if(order == TaskOrder.BALANCED) {
+					boolean largeA = jar.getSize(a) >= LARGE_ENTRY_SIZE;
+					boolean largeB = jar.getSize(b) >= LARGE_ENTRY_SIZE;
+					
+					if(largeA != largeB)
+						byOrder = largeA ? -1 : 1;
+					else
+					if(largeA)
+						byOrder = Long.compare(jar.getSize(b), jar.getSize(a));
+					else
+						byOrder = compareDirectories(a, b);
+				}
+				
+				return byOrder != 0 ? byOrder : Integer.compare(a, b);
+			}
+		});
+		
+		int[] indices = new int[size];
+		for(int i = 0; i < size; i++)
+			indices[i] = ordered[i];
+		
+		return indices;
+	}
+	
+	/**
+	 * Compares the directories two planned entries are written to.
+	 */
+	private int compareDirectories(int a, int b) {
+		Path dirA = targets[a].getParent();
+		Path dirB = targets[b].getParent();
+		
+		return dirA == null || dirB == null ? Boolean.compare(dirA != null, dirB != null) : dirA.compareTo(dirB);
+	}
+	
+	/**
+	 * Returns the target of a planned entry, or null if the entry is not part of the plan.
+	 */
+	public Path getTarget(int entry) {
+		return targets[entry];
+	}
+	
+	/**
+	 * Returns the planned directories, ordered so that every directory comes after its parent.
+	 */
+	public List<Path> getDirectories() {
+		List<Path> ordered = new ArrayList<Path>(directories);
+		Collections.sort(ordered, new Comparator<Path>() {
+			public int compare(Path a, Path b) {
+				int byDepth = Integer.compare(a.getNameCount(), b.getNameCount());
+				return byDepth != 0 ? byDepth : a.compareTo(b);
+			}
+		});
+		
+		return ordered;
+	}
+	
+	/**
+	 * Creates the root and every planned directory that does not exist yet, recording each one
+	 * in a journal.
+	 *
+	 * @param journal the journal of the installation.
+	 * @return the number of directories that were created.
+	 * @throws IOException a directory could not be created.
+	 */
+	public int createDirectories(InstallJournal journal) throws IOException {
+		int created = 0;
+		
+		journal.createDirectories(root);
+		
+		for(Path dir : getDirectories()) {
+			try {
+				Files.createDirectory(dir);
+				journal.directory(dir);
+				InstallerEvents.directoryCreated(dir);
+				created++;
+			} catch (FileAlreadyExistsException e) {
+				if(!Files.isDirectory(dir))
+					throw e;
+			}
+		}
+		
+		return created;
+	}
+
+}
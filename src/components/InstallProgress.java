@@ -0,0 +1,151 @@
+package components;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class models the progress of an installation.  Workers update it without taking any locks, and
+ * the user interface samples it at its own rate, so that extraction never waits on the interface.
+ *
+ * @author kieransherman
+ *
+ */
+public class InstallProgress {
+
+	private final LongAdder bytesDone;
+	private final LongAdder entriesDone;
+	private final Queue<String> lines;
+	
+	private volatile long totalEntries;
+	private volatile long totalBytes;
+	private volatile String text;
+	private volatile boolean finished;
+	
+	/**
+	 * Creates a new InstallProgress.
+	 */
+	public InstallProgress() {
+		this.bytesDone = new LongAdder();
+		this.entriesDone = new LongAdder();
+		this.lines = new ConcurrentLinkedQueue<String>();
+		this.text = "";
+	}
+	
+	/**
+	 * Queues a line for the log, and shows it as the current text.
+	 */
+	public void log(String line) {
+		lines.add(line);
+		text = line;
+	}
+	
+	/**
+	 * Returns the next queued log line, or null if there is none.
+	 */
+	public String pollLog() {
+		return lines.poll();
+	}
+	
+	/**
+	 * Sets the current text without logging it.
+	 */
+	public void setText(String line) {
+		text = line;
+	}
+	
+	/**
+	 * Returns the current text.
+	 */
+	public String getText() {
+		return text;
+	}
+	
+	/**
+	 * Adds to the number of bytes completed, whether they were written, linked or verified.
+	 */
+	public void addBytes(long bytes) {
+		bytesDone.add(bytes);
+	}
+	
+	/**
+	 * Returns the number of bytes completed.
+	 */
+	public long getBytesDone() {
+		return bytesDone.sum();
+	}
+	
+	/**
+	 * Adds to the number of entries completed.
+	 */
+	public void addEntries(long entries) {
+		entriesDone.add(entries);
+	}
+	
+	/**
+	 * Returns the number of entries completed.
+	 */
+	public long getEntriesDone() {
+		return entriesDone.sum();
+	}
+	
+	/**
+	 * Sets the number of entries the installation completes in total.
+	 */
+	public void setTotalEntries(long totalEntries) {
+		this.totalEntries = totalEntries;
+	}
+	
+	/**
+	 * Adds to the number of entries the installation completes in total, for installations made of
+	 * several payloads.
+	 */
+	public void addTotalEntries(long entries) {
+		totalEntries += entries;
+	}
+	
+	/**
+	 * Returns the number of entries the installation completes in total.
+	 */
+	public long getTotalEntries() {
+		return totalEntries;
+	}
+	
+	/**
+	 * Sets the number of bytes the installation completes in total, or 0 if it is not known up
+	 * front.  Progress is weighted by bytes when the total is known, and by entries otherwise.
+	 */
+	public void setTotalBytes(long totalBytes) {
+		this.totalBytes = totalBytes;
+	}
+	
+	/**
+	 * Adds to the number of bytes the installation completes in total, for installations made of
+	 * several payloads.
+	 */
+	public void addTotalBytes(long bytes) {
+		totalBytes += bytes;
+	}
+	
+	/**
+	 * Returns the number of bytes the installation completes in total, or 0 if it is not known.
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+	
+	/**
+	 * Marks the installation as finished.
+	 */
+	public void finish() {
+		finished = true;
+	}
+	
+	/**
+	 * Returns true if the installation is finished.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+}
@@ -0,0 +1,306 @@
+package components;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class models the timing report of an installation: how long each phase took, how long each
+ * entry took to extract, and how much was installed.  The report is written as JSON next to the
+ * installation, so that reports from many machines can be aggregated.
+ *
+ * @author kieransherman
+ *
+ */
+public class InstallReport {
+
+	public static final int VERSION = 1;
+	
+	private final Instant startedAt;
+	private final long startNanos;
+	private final Map<String, Object> environment;
+	private final Map<String, Object> settings;
+	private final Map<String, Long> phases;
+	private final Map<String, InstallerEvents.Phase> openPhases;
+	private final Map<String, Long> phaseStarts;
+	
+	private final LatencyHistogram storedLatency;
+	private final LatencyHistogram deflatedLatency;
+	private final LatencyHistogram linkLatency;
+	
+	private final LongAdder entries;
+	private final LongAdder bytes;
+	private final LongAdder linked;
+	private final LongAdder verified;
+	private final LongAdder skipped;
+	private final LongAdder directories;
+	private final LongAdder corrupt;
+	private final LongAdder reextracted;
+	
+	private String error;
+	private String failedPhase;
+	private boolean cancelled;
+	
+	/**
+	 * Creates a new InstallReport, starting its clock.
+	 */
+	public InstallReport() {
+		this.startedAt = Instant.now();
+		this.startNanos = System.nanoTime();
+		this.environment = new LinkedHashMap<String, Object>();
+		this.settings = new LinkedHashMap<String, Object>();
+		this.phases = new LinkedHashMap<String, Long>();
+		this.openPhases = new LinkedHashMap<String, InstallerEvents.Phase>();
+		this.phaseStarts = new HashMap<String, Long>();
+		
+		this.storedLatency = new LatencyHistogram();
+		this.deflatedLatency = new LatencyHistogram();
+		this.linkLatency = new LatencyHistogram();
+		
+		this.entries = new LongAdder();
+		this.bytes = new LongAdder();
+		this.linked = new LongAdder();
+		this.verified = new LongAdder();
+		this.skipped = new LongAdder();
+		this.directories = new LongAdder();
+		this.corrupt = new LongAdder();
+		this.reextracted = new LongAdder();
+		
+		environment.put("os", System.getProperty("os.name"));
+		environment.put("arch", System.getProperty("os.arch"));
+		environment.put("processors", Runtime.getRuntime().availableProcessors());
+		environment.put("java", System.getProperty("java.version"));
+	}
+	
+	/**
+	 * Records a property of the machine the installation runs on.
+	 */
+	public synchronized void environment(String name, Object value) {
+		environment.put(name, value);
+	}
+	
+	/**
+	 * Records a setting of the installation.
+	 */
+	public synchronized void setting(String name, Object value) {
+		settings.put(name, value);
+	}
+	
+	/**
+	 * Begins a phase, and the flight recorder event that spans it.
+	 *
+	 * @param name the name of the phase.
+	 */
+	public synchronized void begin(String name) {
+		InstallerEvents.Phase event = new InstallerEvents.Phase();
+		event.name = name;
+		event.begin();
+		
+		openPhases.put(name, event);
+		phaseStarts.put(name, System.nanoTime());
+	}
+	
+	/**
+	 * Ends a phase.  A phase run more than once accumulates its time.
+	 *
+	 * @param name the name of the phase.
+	 */
+	public synchronized void end(String name) {
+		Long start = phaseStarts.remove(name);
+		if(start == null)
+			return;
+		
+		Long previous = phases.get(name);
+		phases.put(name, (previous == null ? 0 : previous)+System.nanoTime()-start);
+		
+		openPhases.remove(name).commit();
+	}
+	
+	/**
+	 * Records an extracted entry.
+	 *
+	 * @param stored true if the entry was stored, false if it was deflated.
+	 * @param nanos the time it took to extract.
+	 * @param size the number of bytes written.
+	 */
+	public void entry(boolean stored, long nanos, long size) {
+		(stored ? storedLatency : deflatedLatency).record(nanos);
+		entries.increment();
+		bytes.add(size);
+	}
+	
+	/**
+	 * Records an entry linked to an identical one.
+	 *
+	 * @param nanos the time it took to link.
+	 */
+	public void linked(long nanos) {
+		linkLatency.record(nanos);
+		linked.increment();
+	}
+	
+	/**
+	 * Records an entry a resumed installation already wrote.
+	 */
+	public void verified() {
+		verified.increment();
+	}
+	
+	/**
+	 * Records an entry an incremental installation left in place.
+	 */
+	public void skipped() {
+		skipped.increment();
+	}
+	
+	/**
+	 * Records an entry whose written contents failed their checks.
+	 */
+	public void corrupt() {
+		corrupt.increment();
+	}
+	
+	/**
+	 * Records an entry extracted again after it failed its checks.
+	 */
+	public void reextracted() {
+		reextracted.increment();
+	}
+	
+	/**
+	 * Records created directories.
+	 */
+	public void directories(long created) {
+		directories.add(created);
+	}
+	
+	/**
+	 * Records that the installation failed, ending the phase it failed in.
+	 */
+	public synchronized void fail(Throwable e) {
+		error = e.getClass().getName()+(e.getMessage() == null ? "" : ": "+e.getMessage());
+		failedPhase = endOpenPhases();
+	}
+	
+	/**
+	 * Records that the installation was cancelled, ending the phase it was cancelled in.
+	 */
+	public synchronized void cancel() {
+		cancelled = true;
+		endOpenPhases();
+	}
+	
+	/**
+	 * Ends every phase that is still open, returning the last one, or null if none was open.
+	 */
+	private String endOpenPhases() {
+		String last = null;
+		
+		for(String name : new ArrayList<String>(openPhases.keySet())) {
+			last = name;
+			end(name);
+		}
+		
+		return last;
+	}
+	
+	/**
+	 * Returns the outcome of the installation: installed, failed or cancelled.
+	 */
+	private String getOutcome() {
+		return cancelled ? "cancelled" : error == null ? "installed" : "failed";
+	}
+	
+	/**
+	 * Returns the report as JSON.
+	 */
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{\n");
+		
+		json.append("  \"version\": ").append(VERSION).append(",\n");
+		json.append("  \"outcome\": ").append(Json.quote(getOutcome())).append(",\n");
+		json.append("  \"error\": ").append(Json.quote(error)).append(",\n");
+		json.append("  \"failedPhase\": ").append(Json.quote(failedPhase)).append(",\n");
+		json.append("  \"startedAt\": ").append(Json.quote(startedAt.toString())).append(",\n");
+		json.append("  \"totalMillis\": ").append(millis(System.nanoTime()-startNanos)).append(",\n");
+		
+		json.append("  \"environment\": ");
+		appendObject(json, environment);
+		json.append(",\n");
+		
+		json.append("  \"settings\": ");
+		appendObject(json, settings);
+		json.append(",\n");
+		
+		json.append("  \"phasesMillis\": {");
+		String separator = "";
+		for(Map.Entry<String, Long> phase : phases.entrySet()) {
+			json.append(separator).append(Json.quote(phase.getKey())).append(": ").append(millis(phase.getValue()));
+			separator = ", ";
+		}
+		json.append("},\n");
+		
+		json.append("  \"counts\": {");
+		json.append("\"entries\": ").append(entries.sum());
+		json.append(", \"bytes\": ").append(bytes.sum());
+		json.append(", \"linked\": ").append(linked.sum());
+		json.append(", \"verified\": ").append(verified.sum());
+		json.append(", \"skipped\": ").append(skipped.sum());
+		json.append(", \"directories\": ").append(directories.sum());
+		json.append(", \"corrupt\": ").append(corrupt.sum());
+		json.append(", \"reextracted\": ").append(reextracted.sum());
+		json.append("},\n");
+		
+		json.append("  \"entryLatency\": {\n");
+		json.append("    \"stored\": ").append(storedLatency.toJson()).append(",\n");
+		json.append("    \"deflated\": ").append(deflatedLatency.toJson()).append(",\n");
+		json.append("    \"linked\": ").append(linkLatency.toJson()).append("\n");
+		json.append("  }\n");
+		
+		return json.append("}\n").toString();
+	}
+	
+	/**
+	 * Writes the report to a file, replacing it atomically if one exists.
+	 *
+	 * @param file the report file.
+	 * @throws IOException the report could not be written.
+	 */
+	public void write(Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName()+".tmp");
+		
+		Files.write(temp, toJson().getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Appends a map of names to values as a JSON object.
+	 */
+	private static void appendObject(StringBuilder json, Map<String, Object> values) {
+		String separator = "";
+		
+		json.append('{');
+		for(Map.Entry<String, Object> value : values.entrySet()) {
+			json.append(separator).append(Json.quote(value.getKey())).append(": ").append(Json.value(value.getValue()));
+			separator = ", ";
+		}
+		json.append('}');
+	}
+	
+	/**
+	 * Returns nanoseconds as milliseconds, to the microsecond.
+	 */
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos/1e6);
+	}
+
+}
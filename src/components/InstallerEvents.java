@@ -0,0 +1,107 @@
+package components;
+
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Class holds the JDK Flight Recorder events of the installer, so that a recording of a slow
+ * installation shows its phases and entries alongside the JVM's own file I/O and GC events.  The
+ * events cost next to nothing unless a recording enables them.
+ *
+ * @author kieransherman
+ *
+ */
+public final class InstallerEvents {
+
+	private static final String CATEGORY = "Installer";
+	
+	private InstallerEvents() {
+	}
+	
+	/**
+	 * Event spanning the extraction of one entry.
+	 */
+	@Name("components.EntryExtracted")
+	@Label("Entry Extracted")
+	@Category(CATEGORY)
+	@Description("An archive entry written to disk")
+	@StackTrace(false)
+	public static class EntryExtracted extends Event {
+		
+		@Label("Name")
+		public String name;
+		
+		@Label("Compressed Size")
+		@DataAmount
+		public long compressedSize;
+		
+		@Label("Size")
+		@DataAmount
+		public long size;
+		
+		@Label("Stored")
+		@Description("True if the entry was stored, false if it was deflated")
+		public boolean stored;
+		
+		@Label("Worker")
+		public String worker;
+	}
+	
+	/**
+	 * Event marking a directory created by the installation.
+	 */
+	@Name("components.DirectoryCreated")
+	@Label("Directory Created")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class DirectoryCreated extends Event {
+		
+		@Label("Path")
+		public String path;
+	}
+	
+	/**
+	 * Event spanning a phase of the installation, from its beginning to its end.
+	 */
+	@Name("components.Phase")
+	@Label("Installation Phase")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class Phase extends Event {
+		
+		@Label("Name")
+		public String name;
+	}
+	
+	/**
+	 * Event marking the cancellation of an extraction.
+	 */
+	@Name("components.Cancellation")
+	@Label("Extraction Cancelled")
+	@Category(CATEGORY)
+	public static class Cancellation extends Event {
+		
+		@Label("Pending Tasks")
+		@Description("Tasks that were queued and never ran")
+		public int pendingTasks;
+	}
+	
+	/**
+	 * Records that a directory was created.
+	 */
+	public static void directoryCreated(Path dir) {
+		DirectoryCreated event = new DirectoryCreated();
+		if(event.shouldCommit()) {
+			event.path = dir.toString();
+			event.commit();
+		}
+	}
+
+}
@@ -2,20 +2,31 @@ package components;
 
 import static java.nio.file.StandardCopyOption.*;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-
-import javax.swing.JOptionPane;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 
 import components.JarInstallerUI.InstallationUI;
 
@@ -32,7 +43,49 @@ public final class JarInstaller {
 		INCLUDE_ONLY, EXCLUDE, ALL;
 	}
 	
-	protected JarFile jarFile;
+	/**
+	 * The orders the workers extract entries in.
+	 */
+	public enum TaskOrder {
+		
+		/** The order of the archive's central directory. */
+		ARCHIVE,
+		
+		/** The largest entries first. */
+		LARGEST_FIRST,
+		
+		/** Grouped by the directory the entries are written to. */
+		DIRECTORY,
+		
+		/** The large entries first, largest first, and then the rest grouped by directory. */
+		BALANCED;
+	}
+	
+	/**
+	 * The checks made on every entry as it is written.
+	 */
+	public enum Verification {
+		
+		/** No checks. */
+		NONE,
+		
+		/** The size and CRC-32 recorded in the archive. */
+		CRC32,
+		
+		/** The size and CRC-32, and the SHA-256 digest listed in the payload's manifest. */
+		SHA256;
+	}
+	
+	/**
+	 * The default size below which entries are extracted in batches.
+	 */
+	public static final long DEFAULT_BATCH_THRESHOLD = 16*1024;
+	
+	private static final int BATCH_ENTRIES = 64;
+	private static final long BATCH_BYTES = 256*1024;
+	private static final int MAX_ATTEMPTS = 3;
+	
+	protected MappedJarReader jarReader;
 	
 	protected String jarFilePath;
 	protected String tempJarFileName;
@@ -42,11 +95,38 @@ public final class JarInstaller {
 	protected String sourceFolderFileName;
 	
 	protected JarInstallerUI jarInstallerUI;
+	protected InstallProgress progress;
 	
 	protected volatile Thread shutdownHook;
-	protected volatile Thread currentThread;
+	protected volatile ExtractionEngine engine;
+	
+	protected int workerCount;
+	protected int bufferSize;
+	protected long batchThreshold;
+	protected long preallocationThreshold;
+	protected TaskOrder taskOrder;
+	protected Verification verification;
+	protected boolean streaming;
+	protected boolean incremental;
+	protected boolean deduplicate;
+	protected boolean resumable;
+	protected boolean inPlace;
+	protected EntryWriter entryWriter;
+	
+	protected InstallPlan plan;
+	protected InstallJournal journal;
+	protected InstallManifest previousManifest;
+	protected InstallManifest manifest;
+	protected InstallManifest checkpoint;
+	protected InstallReport report;
+	protected EntryFilter filter;
 	
-	private volatile ArrayList<Thread> threadList;
+	protected List<String> payloads;
+	protected volatile List<JarInstaller> archives;
+	
+	private volatile ArrayList<Runnable> taskList;
+	private ThreadLocal<EntryCheck> checks;
+	private Map<String, byte[]> digests;
 	
 	/**
 	 * Creates a new installer with a location to the .jar file to install.
@@ -55,10 +135,118 @@ public final class JarInstaller {
 	 */
 	public JarInstaller(String jarFilePath) {
 		this.jarFilePath = jarFilePath;
-		this.threadList = new ArrayList<Thread>();
+		this.taskList = new ArrayList<Runnable>();
+		this.payloads = new ArrayList<String>();
 
 		setTempJarFileName(".installation");
 		setSourceFolderName("src");
+		setWorkerCount(Runtime.getRuntime().availableProcessors());
+		setBufferSize(EntryWriter.DEFAULT_BUFFER_SIZE);
+		setBatchThreshold(DEFAULT_BATCH_THRESHOLD);
+		setPreallocationThreshold(EntryWriter.DEFAULT_PREALLOCATION_THRESHOLD);
+		setTaskOrder(TaskOrder.BALANCED);
+		setVerification(Verification.CRC32);
+		setFilter(EntryFilter.of(InstallType.INCLUDE_ONLY, "files"));
+	}
+	
+	/**
+	 * Set the filter that decides which entries are installed.
+	 */
+	public void setFilter(EntryFilter filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * Adds a .jar file to install in the same run, into a folder of its own named after the file and
+	 * next to the main one.  Every payload shares the same workers, progress and rollback, and the
+	 * installation only completes once all of them are installed.
+	 * 
+	 * @param jarFilePath the location of the .jar file to install.
+	 */
+	public void addPayload(String jarFilePath) {
+		payloads.add(jarFilePath);
+	}
+	
+	/**
+	 * Set whether the payload is extracted in a single streaming pass instead of being copied to
+	 * a temporary jar first.  Streaming extracts entries one at a time as they are read.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+	
+	/**
+	 * Set whether an installation over an existing one only rewrites the entries that changed, were
+	 * added, or are missing on disk.  Unchanged entries are found through the manifest stored next
+	 * to run.jar.  Incremental installations do not apply to streaming.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * Set whether entries with identical contents are written once and hard-linked into place.
+	 * Deduplication does not apply to streaming.
+	 */
+	public void setDeduplicate(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+	
+	/**
+	 * Set whether an interrupted installation can be resumed.  Completed entries are recorded in a
+	 * checkpoint in the extraction folder, and a cancelled installation keeps what it wrote.  The
+	 * next installation of the same payload verifies the recorded entries and only extracts those
+	 * that are unfinished or corrupt.  Resuming does not apply to streaming.
+	 */
+	public void setResumable(boolean resumable) {
+		this.resumable = resumable;
+	}
+	
+	/**
+	 * Set the size of the buffer each worker copies entries through.
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+	
+	/**
+	 * Set the order the workers extract entries in.  Starting the largest entries first keeps one
+	 * large entry near the end of the archive from finishing long after the rest.
+	 */
+	public void setTaskOrder(TaskOrder taskOrder) {
+		this.taskOrder = taskOrder;
+	}
+	
+	/**
+	 * Set the checks made on every entry as it is written.  An entry that fails them is extracted
+	 * again, and only fails the installation if it keeps failing.
+	 */
+	public void setVerification(Verification verification) {
+		this.verification = verification;
+	}
+	
+	/**
+	 * Set the size below which entries are extracted in batches: runs of up to 64 small entries,
+	 * or 256 KB of them, are written back to back by one worker as a single task.  A threshold of 0
+	 * extracts every entry as a task of its own.
+	 */
+	public void setBatchThreshold(long batchThreshold) {
+		this.batchThreshold = Math.max(0, batchThreshold);
+	}
+	
+	/**
+	 * Set the size from which entries' files are preallocated to their final size before they are
+	 * written, or 0 to never preallocate.
+	 */
+	public void setPreallocationThreshold(long preallocationThreshold) {
+		this.preallocationThreshold = Math.max(0, preallocationThreshold);
+	}
+	
+	/**
+	 * Set the number of workers that extract entries concurrently.
+	 */
+	public void setWorkerCount(int workerCount) {
+		this.workerCount = Math.max(1, workerCount);
 	}
 	
 	/**
@@ -81,17 +269,34 @@ public final class JarInstaller {
 	 * @param installationUI the UI used to install the .jar file.
 	 */
 	public void startInstallation(InstallationUI installationUI) {
+		startInstallation(installationUI, new InstallOptions());
+	}
+	
+	/**
+	 * Begins the installation using a specific installation user interface and command line
+	 * options.  The headless interface is the only one configured entirely by the options.
+	 * 
+	 * @param installationUI the UI used to install the .jar file.
+	 * @param options the options of the installation.
+	 */
+	public void startInstallation(InstallationUI installationUI, InstallOptions options) {
+		options.apply(this);
+		
 		switch(installationUI) {
 			case GRAPHICAL:
-				jarInstallerUI = new GraphicalUI(this);
+				jarInstallerUI = GraphicalUI.create(this);
 				break;
 				
 			case DEFAULT:
-				jarInstallerUI = new DefaultUI(this);
+				jarInstallerUI = DefaultUI.create(this);
+				break;
+				
+			case HEADLESS:
+				jarInstallerUI = HeadlessUI.create(this, options);
 				break;
 				
 			default:
-				jarInstallerUI = new DefaultUI(this);
+				jarInstallerUI = DefaultUI.create(this);
 		}
 		
 		addShutdownHook();
@@ -101,6 +306,16 @@ public final class JarInstaller {
 	
 	
 	
+	/**
+	 * Opens a .jar file and extracts the files accepted by the installer's filter to a directory.
+	 * Then, the .jar file itself is copied to the same directory.
+	 * 
+	 * @throws Exception something goes wrong with the installation.
+	 */
+	protected void install() throws Exception {
+		install(filter);
+	}
+	
 	/**
 	 * Opens a .jar file and extracts its files based on the {@link #InstallType} to a directory.  Then,
 	 * the .jar file itself is copied to the same directory.
@@ -110,20 +325,202 @@ public final class JarInstaller {
 	 * @throws Exception something goes wrong with the installation.
 	 */
 	protected void install(InstallType installType, String modifier) throws Exception {
+		install(EntryFilter.of(installType, modifier));
+	}
+	
+	/**
+	 * Opens a .jar file and extracts the files a filter accepts to a directory.  Then, the .jar file
+	 * itself is copied to the same directory.
+	 * 
+	 * @param filter the filter that decides which entries are installed.
+	 * @throws Exception something goes wrong with the installation.
+	 */
+	protected void install(EntryFilter filter) throws Exception {
 		if(jarInstallerUI == null || !jarInstallerUI.display())
 			throw new Exception("<NULL>");
 		
+		progress = new InstallProgress();
+		entryWriter = new EntryWriter(bufferSize, preallocationThreshold);
+		jarInstallerUI.startSampling(progress);
+		
+		List<JarInstaller> archives = new ArrayList<JarInstaller>();
+		archives.add(this);
+		
+		for(String payload : payloads)
+			archives.add(companion(payload));
+		
+		this.archives = archives;
+		String phase = streaming ? "streamingExtraction" : "extraction";
+		
+		try {
+			checkFolders();
+			
+			for(JarInstaller archive : archives)
+				archive.prepare(filter);
+			
+			for(JarInstaller archive : archives)
+				archive.report.begin(phase);
+			
+			executeInstallerTasks();
+			
+			for(JarInstaller archive : archives)
+				archive.report.end(phase);
+			
+			for(JarInstaller archive : archives)
+				archive.finishInstallation();
+			
+			commitInstallations();
+			
+			progress.log("INSTALLATION FINISHED");
+			progress.finish();
+		} catch (Exception e) {
+			for(JarInstaller archive : archives)
+				if(archive.report != null) {
+					if(isCancelled())
+						archive.report.cancel();
+					else
+						archive.report.fail(e);
+				}
+			
+			throw e;
+		} finally {
+			for(JarInstaller archive : archives)
+				if(archive.report != null)
+					archive.writeReport();
+		}
+	}
+	
+	/**
+	 * Returns an installer for an additional payload with the same settings, progress and writer
+	 * as this one.  The payload is extracted to a folder named after its .jar file, which is hidden
+	 * while it installs if this installer's folder is.
+	 */
+	private JarInstaller companion(String payload) {
+		JarInstaller companion = new JarInstaller(payload);
+		String name = Paths.get(payload).getFileName().toString().replaceAll("(?i)[.]jar$", "");
+		
+		companion.jarInstallerUI = jarInstallerUI;
+		companion.progress = progress;
+		companion.entryWriter = entryWriter;
+		companion.filter = filter;
+		companion.workerCount = workerCount;
+		companion.bufferSize = bufferSize;
+		companion.batchThreshold = batchThreshold;
+		companion.preallocationThreshold = preallocationThreshold;
+		companion.taskOrder = taskOrder;
+		companion.verification = verification;
+		companion.streaming = streaming;
+		companion.incremental = incremental;
+		companion.deduplicate = deduplicate;
+		companion.resumable = resumable;
+		companion.sourceFolderFileName = sourceFolderFileName;
+		
+		companion.setTempJarFileName(tempJarFileName+"-"+name);
+		companion.setExtractionDir(extractionDirFilePath);
+		companion.setExtractionName(extractionDirFileName.startsWith(".") ? "."+name : name);
+		
+		return companion;
+	}
+	
+	/**
+	 * Checks that no two payloads install to the same folder.
+	 */
+	private void checkFolders() throws Exception {
+		Set<String> folders = new HashSet<String>();
+		
+		for(JarInstaller archive : archives)
+			if(!folders.add(archive.getFolderName()))
+				throw new Exception("More than one payload installs to the folder "+archive.getFolderName()+".");
+	}
+	
+	/**
+	 * Prepares the installation of this installer's payload, and queues the tasks that extract it.
+	 */
+	private void prepare(EntryFilter filter) throws Exception {
+		report = new InstallReport();
+		report.begin("prepare");
+		
 		tempJarFilePath = extractionDirFilePath+tempJarFileName;
-		File tempJarFile = new File(tempJarFilePath);
 		
 		convertFilePathsToOS();
+		prepareIncrementalInstallation();
+		openJournal();
+		recordSettings(filter);
 		
 		if(getClass().getClassLoader().getResourceAsStream(jarFilePath) == null)
-			throw new Exception("Missing files required for installation.");
+			throw new Exception("Missing files required for installation: "+jarFilePath);
+		
+		report.end("prepare");
+		
+		if(verification != Verification.NONE) {
+			checks = new ThreadLocal<EntryCheck>() {
+				protected EntryCheck initialValue() {
+					return new EntryCheck(verification == Verification.SHA256);
+				}
+			};
+		}
 		
-	    queueInstallerThreads(tempJarFile, installType, modifier);
-		executeInstallerThreads();
-		finishInstallation(tempJarFile);
+		if(streaming) {
+			queueStreamingTask(filter);
+		} else {
+			queueInstallerTasks(new File(tempJarFilePath), filter);
+		}
+	}
+	
+	/**
+	 * Returns the installers of every payload in the installation, starting with this one.
+	 */
+	private List<JarInstaller> getArchives() {
+		List<JarInstaller> archives = this.archives;
+		return archives != null ? archives : Arrays.asList(this);
+	}
+	
+	/**
+	 * Records the settings of the installation and the file system it installs to in the report.
+	 */
+	private void recordSettings(EntryFilter filter) {
+		report.setting("payload", jarFilePath);
+		report.setting("filter", filter);
+		report.setting("workers", workerCount);
+		report.setting("bufferSize", bufferSize);
+		report.setting("batchThreshold", batchThreshold);
+		report.setting("preallocationThreshold", preallocationThreshold);
+		report.setting("taskOrder", taskOrder);
+		report.setting("verification", verification);
+		report.setting("streaming", streaming);
+		report.setting("incremental", incremental);
+		report.setting("deduplicate", deduplicate);
+		report.setting("resumable", resumable);
+		report.setting("inPlace", inPlace);
+		
+		try {
+			report.environment("fileStore", Files.getFileStore(Paths.get(extractionDirFilePath)).type());
+		} catch (IOException e) {
+			report.environment("fileStore", null);
+		}
+	}
+	
+	/**
+	 * Writes the timing report next to the extraction folder.  A report that cannot be written does
+	 * not fail the installation.
+	 */
+	private void writeReport() {
+		Path reportFile = Paths.get(extractionDirFilePath+"."+getFolderName()+".report.json");
+		
+		try {
+			report.write(reportFile);
+			System.out.println("INSTALL REPORT: "+reportFile);
+		} catch (IOException e) {
+			System.err.println("COULD NOT WRITE INSTALL REPORT: "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * Returns the name of the extraction folder, without the leading "." of a folder that is
+	 * renamed when the installation finishes.
+	 */
+	private String getFolderName() {
+		return extractionDirFileName.replaceAll("^[.]+|[/\\\\]+$", "");
 	}
 	
 	/**
@@ -151,130 +548,653 @@ public final class JarInstaller {
 	}
 	
 	/**
-	 * Creates and queues all the threads needed for installation.
+	 * Installs over an existing installation in place, if there is one, and loads its manifest.
 	 */
-	private void queueInstallerThreads(File tempJarFile, InstallType installType, String modifier) throws Exception {
+	private void prepareIncrementalInstallation() {
+		if(!incremental || streaming)
+			return;
+		
+		if(extractionDirFileName.startsWith(".") && 
+				new File(extractionDirFilePath+extractionDirFileName.substring(1)).isDirectory()) {
+			extractionDirFileName = extractionDirFileName.substring(1);
+			inPlace = true;
+		} else {
+			inPlace = new File(extractionDirFilePath+extractionDirFileName).isDirectory();
+		}
+		
+		previousManifest = InstallManifest.load(Paths.get(extractionDirFilePath+extractionDirFileName+InstallManifest.FILE_NAME));
+		manifest = new InstallManifest();
+	}
+	
+	/**
+	 * Opens the journal of the installation.  An installation to the same folder that was never
+	 * committed is resumed if the installation is resumable, and rolled back otherwise.
+	 */
+	private void openJournal() {
+		journal = new InstallJournal(Paths.get(extractionDirFilePath+"."+getFolderName()+".journal"));
+		
+		if(journal.exists()) {
+			if(resumable && !streaming) {
+				progress.log("RESUMING UNFINISHED INSTALLATION");
+				return;
+			}
+			
+			progress.log("ROLLING BACK UNFINISHED INSTALLATION");
+			
+			for(Path failure : journal.rollback())
+				System.err.println("COULD NOT REMOVE: "+failure);
+		}
+	}
+	
+	/**
+	 * Creates and queues all the tasks needed for installation.
+	 */
+	private void queueInstallerTasks(File tempJarFile, EntryFilter filter) throws Exception {
+		report.begin("payloadCopy");
 	    Files.copy(getClass().getClassLoader().getResourceAsStream(jarFilePath), tempJarFile.toPath(), REPLACE_EXISTING);
+		report.end("payloadCopy");
 
-		jarFile = new JarFile(tempJarFile.getPath());
-		Enumeration<JarEntry> jarContents = jarFile.entries();
+		report.begin("centralDirectoryScan");
+		jarReader = new MappedJarReader(tempJarFile.toPath());
+		loadDigests();
+		plan = new InstallPlan(Paths.get(extractionDirFilePath+extractionDirFileName+sourceFolderFileName), jarReader.size());
 		
-		while(jarContents.hasMoreElements()) {
-			JarEntry file = (JarEntry)jarContents.nextElement();
-			String fileName = FileModifier.getModifiedFilePath(file.getName());
+		for(int entry = 0; entry < jarReader.size(); entry++) {
+			String name = jarReader.getName(entry);
 			
-			if(installType == InstallType.INCLUDE_ONLY && !fileName.startsWith(modifier))
+			if(jarReader.isDirectory(entry) || !filter.accepts(name))
 				continue;
-			else
-			if(installType == InstallType.EXCLUDE && fileName.startsWith(modifier))
+			
+			Path target = plan.resolve(FileModifier.getModifiedFilePath(name));
+			
+			if(previousManifest != null && previousManifest.isCurrent(name, jarReader.getSize(entry), 
+					jarReader.getCrc(entry), target)) {
+				manifest.copy(previousManifest, name);
+				report.skipped();
 				continue;
+			}
 			
-			FileModifier.createFileSystem(extractionDirFilePath+extractionDirFileName+sourceFolderFileName+fileName);
+			plan.add(entry, target);
+		}
+		
+		report.end("centralDirectoryScan");
+		
+		report.begin("directoryCreation");
+		report.directories(plan.createDirectories(journal));
+		openCheckpoint();
+		report.end("directoryCreation");
+		
+		Map<Integer, int[]> links = new HashMap<Integer, int[]>();
+		Set<Integer> linked = new HashSet<Integer>();
+		
+		if(deduplicate) {
+			report.begin("deduplication");
+			
+			for(int[] group : new EntryDeduplicator(jarReader).findDuplicates(plan.getEntries())) {
+				links.put(group[0], Arrays.copyOfRange(group, 1, group.length));
+				
+				for(int i = 1; i < group.length; i++)
+					linked.add(group[i]);
+			}
+			
+			report.end("deduplication");
+		}
+		
+		int[] batch = new int[BATCH_ENTRIES];
+		int batchSize = 0;
+		long batchBytes = 0;
+		
+		for(int entry : plan.getEntries(taskOrder, jarReader)) {
+			if(linked.contains(entry))
+				continue;
 			
-			threadList.add(queueFile(jarFile, file, extractionDirFilePath+extractionDirFileName+sourceFolderFileName, fileName));
+			long size = jarReader.getSize(entry);
+			
+			if(size >= batchThreshold) {
+				taskList.add(queueBatch(jarReader, new int[]{entry}, links));
+				continue;
+			}
+			
+			batch[batchSize++] = entry;
+			batchBytes += size;
+			
+			if(batchSize == BATCH_ENTRIES || batchBytes >= BATCH_BYTES) {
+				taskList.add(queueBatch(jarReader, Arrays.copyOf(batch, batchSize), links));
+				batchSize = 0;
+				batchBytes = 0;
+			}
 		}
 		
-		jarInstallerUI.setMaximumProgress(threadList.size()+1);
+		if(batchSize > 0)
+			taskList.add(queueBatch(jarReader, Arrays.copyOf(batch, batchSize), links));
+		
+		long totalBytes = tempJarFile.length();
+		for(int entry : plan.getEntries())
+			totalBytes += jarReader.getSize(entry);
+		
+		progress.addTotalEntries(plan.size()+1);
+		progress.addTotalBytes(totalBytes);
 	}
 	
 	/**
-	 * Executes all the installer threads.
+	 * Loads the SHA-256 digests listed in the payload's manifest, if the entries are checked
+	 * against them.
 	 */
-	private void executeInstallerThreads() throws Exception {
-		synchronized(threadList) {
-			for(Thread thread : threadList) {
-				currentThread = thread;
-				thread.start();
-				
-				if(thread.isAlive())
-					synchronized(this) {
-						this.wait();
-					}
+	private void loadDigests() throws IOException {
+		digests = new HashMap<String, byte[]>();
+		
+		if(verification != Verification.SHA256)
+			return;
+		
+		for(int entry = 0; entry < jarReader.size(); entry++) {
+			if(jarReader.getName(entry).equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+				try(InputStream in = jarReader.getInputStream(entry)) {
+					digests = EntryCheck.getDigests(new Manifest(in));
+				}
 			}
 		}
 		
-		jarFile.close();
+		report.setting("digests", digests.size());
 	}
 	
 	/**
-	 * Finishes up the installation.
+	 * Opens the checkpoint of a resumable installation.  The checkpoint left by an earlier attempt
+	 * is kept if it was recorded from the same payload.
 	 */
-	private void finishInstallation(File tempJarFile) throws Exception {
-		jarInstallerUI.log("INSTALLING JARFILE: "+tempJarFile.getName());
+	private void openCheckpoint() throws IOException {
+		if(!resumable)
+			return;
 		
-		String extractionFolder = extractionDirFilePath+extractionDirFileName;
+		Path checkpointFile = Paths.get(extractionDirFilePath+extractionDirFileName+InstallManifest.CHECKPOINT_FILE_NAME);
+		InstallManifest previous = InstallManifest.load(checkpointFile);
+		boolean resume = previous.size() > 0 && previous.getFingerprint() == jarReader.getFingerprint();
 		
-		Files.copy(tempJarFile.toPath(), new File(extractionFolder+"/run.jar").toPath(), 
-				StandardCopyOption.REPLACE_EXISTING);
+		checkpoint = resume ? previous : new InstallManifest();
+		checkpoint.setFingerprint(jarReader.getFingerprint());
 		
-		if(extractionDirFileName.startsWith("."))
-			Files.move(new File(extractionFolder).toPath(), 
-					new File(extractionDirFilePath+extractionDirFileName.substring(1)).toPath(), StandardCopyOption.REPLACE_EXISTING);
-	
-		jarInstallerUI.incrementProgress(1);
-		
-		jarInstallerUI.log("INSTALLATION FINISHED");
-		jarInstallerUI.setFinishable(true);
+		journal.file(checkpointFile);
+		checkpoint.openCheckpoint(checkpointFile, resume);
 	}
 	
 	/**
-	 * Returns a thread which upon execution, writes a file from a *.jar to a directory.
+	 * Queues a single task that reads the embedded .jar file once, extracting the included entries
+	 * as they arrive and copying the raw bytes to run.jar in the same pass.
 	 */
-	private Thread queueFile(JarFile jar, JarEntry file, String fileDir, String fileName) {
-		JarInstaller obj = this;
+	private void queueStreamingTask(EntryFilter filter) throws Exception {
+		Path root = Paths.get(extractionDirFilePath+extractionDirFileName+sourceFolderFileName).normalize();
+		Path runJar = Paths.get(extractionDirFilePath+extractionDirFileName+"run.jar");
+		
+		URLConnection connection = getClass().getClassLoader().getResource(jarFilePath).openConnection();
+		long payloadSize = connection.getContentLengthLong();
+		int steps = 1000;
+		
+		progress.addTotalEntries(payloadSize > 0 ? steps+1 : 1);
 		
-		Thread writerThread = new Thread(fileName) {
+		taskList.add(new Runnable() {
 			public void run() {
+				Thread worker = Thread.currentThread();
+				
 				try {
-					String log = "INSTALLING "+this.getName();
-					jarInstallerUI.log(log);
-
-					File toWrite = new File(fileDir+fileName);
-
-					if(!toWrite.exists())
-						toWrite.createNewFile();
+					Set<Path> directories = new HashSet<Path>();
+					Map<String, Path> corrupt = new HashMap<String, Path>();
+					EntryCheck check = checks != null ? checks.get() : null;
 					
-					InputStream is = jar.getInputStream(file);
-					BufferedInputStream bis = new BufferedInputStream(is);
+					journal.createDirectories(runJar.getParent());
+					journal.file(runJar);
 					
-					FileOutputStream fos = new FileOutputStream(new File(fileDir+fileName));
-					BufferedOutputStream bos = new BufferedOutputStream(fos);
+					try(TeeInputStream tee = new TeeInputStream(connection.getInputStream(),
+								new BufferedOutputStream(Files.newOutputStream(runJar), bufferSize));
+							JarInputStream jar = new JarInputStream(tee, false)) {
+						int step = 0;
+						JarEntry file;
+						
+						digests = verification == Verification.SHA256 ? EntryCheck.getDigests(jar.getManifest()) : new HashMap<String, byte[]>();
+						
+						while((file = jar.getNextJarEntry()) != null && !worker.isInterrupted()) {
+							String fileName = file.getName();
+							
+							if(!file.isDirectory() && filter.accepts(fileName)) {
+								progress.log("INSTALLING "+fileName);
+								
+								Path target = InstallPlan.resolve(root, FileModifier.getModifiedFilePath(fileName));
+								
+								if(directories.add(target.getParent()))
+									journal.createDirectories(target.getParent());
+								
+								journal.file(target);
+								
+								InstallerEvents.EntryExtracted event = new InstallerEvents.EntryExtracted();
+								event.begin();
+								
+								long started = System.nanoTime();
+								
+								if(check != null)
+									check.reset();
+								
+								long written = entryWriter.write(jar, target, file.getSize(), check, progress);
+								boolean stored = file.getMethod() == ZipEntry.STORED;
+								report.entry(stored, System.nanoTime()-started, written);
+								
+								if(check != null && !worker.isInterrupted() && 
+										!check.matches(file.getSize(), file.getCrc(), digests.get(file.getName()))) {
+									report.corrupt();
+									progress.addBytes(-written);
+									corrupt.put(file.getName(), target);
+								}
+								
+								event.end();
+								if(event.shouldCommit()) {
+									event.name = fileName;
+									event.compressedSize = file.getCompressedSize();
+									event.size = written;
+									event.stored = stored;
+									event.worker = worker.getName();
+									event.commit();
+								}
+							}
+							
+							if(payloadSize > 0) {
+								int current = (int)(tee.getBytesRead()*steps/payloadSize);
+								progress.addEntries(current-step);
+								step = current;
+							}
+						}
+						
+						if(worker.isInterrupted()) {
+							progress.log("CANCELLING "+jarFilePath);
+							return;
+						}
+						
+						tee.drain();
+						
+						if(payloadSize > 0)
+							progress.addEntries(steps-step);
+					}
 					
-					long bytesRead = 0;
-					long fileSize = file.getSize();
-					int update = 10000;
+					if(!corrupt.isEmpty())
+						reextract(runJar, corrupt, check);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Extracts the entries of a streaming installation that failed their checks again, from the
+	 * copy of the payload the same pass wrote to run.jar.
+	 * 
+	 * @param runJar the copy of the payload.
+	 * @param corrupt the names of the entries that failed, and the files they were written to.
+	 * @param check the check of the worker.
+	 * @throws IOException an entry could not be extracted, or kept failing its checks.
+	 */
+	private void reextract(Path runJar, Map<String, Path> corrupt, EntryCheck check) throws IOException {
+		try(JarFile jar = new JarFile(runJar.toFile(), false)) {
+			for(Map.Entry<String, Path> entry : corrupt.entrySet()) {
+				JarEntry file = jar.getJarEntry(entry.getKey());
+				boolean matches = false;
+				
+				for(int attempt = 2; attempt <= MAX_ATTEMPTS && !matches; attempt++) {
+					progress.log("RE-EXTRACTING "+file.getName());
+					report.reextracted();
+					check.reset();
 					
-					while(bis.available() > 0 && !this.isInterrupted()) {
-						bos.write(bis.read());
-						bytesRead++;
-						
-						if(bytesRead%update == 0)
-							jarInstallerUI.setText(log+" "+(bytesRead*100/fileSize)+"%");
+					long written;
+					try(InputStream in = jar.getInputStream(file)) {
+						written = entryWriter.write(in, entry.getValue(), file.getSize(), check, progress);
 					}
 					
-					bos.flush();
-					bos.close();
-					bis.close();
+					matches = check.matches(file.getSize(), file.getCrc(), digests.get(file.getName()));
 					
-					if(this.isInterrupted()) {
-						jarInstallerUI.log("CANCELLING "+this.getName());
-						return;
+					if(!matches) {
+						report.corrupt();
+						progress.addBytes(-written);
 					}
-				} catch (IOException e) {
-					e.printStackTrace();
-					quit(e);
 				}
 				
-				synchronized(obj) {
-					obj.notify();
+				if(!matches)
+					throw new ZipException("Entry failed verification "+MAX_ATTEMPTS+" times: "+file.getName());
+			}
+		}
+	}
+	
+	/**
+	 * Executes the installer tasks of every payload on a single bounded pool of workers.
+	 */
+	private void executeInstallerTasks() throws Exception {
+		engine = new ExtractionEngine(workerCount);
+		
+		try {
+			engine.execute(interleave());
+		} finally {
+			engine.shutdown();
+			
+			for(JarInstaller archive : getArchives())
+				if(archive.jarReader != null)
+					archive.jarReader.close();
+		}
+	}
+	
+	/**
+	 * Returns the installer tasks of every payload, taking one from each in turn so that the
+	 * workers share their time fairly between payloads.
+	 */
+	private List<Runnable> interleave() {
+		List<JarInstaller> archives = getArchives();
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		
+		for(int i = 0; tasks.size() < countTasks(archives); i++)
+			for(JarInstaller archive : archives)
+				if(i < archive.taskList.size())
+					tasks.add(archive.taskList.get(i));
+		
+		return tasks;
+	}
+	
+	/**
+	 * Returns the number of installer tasks of a list of payloads.
+	 */
+	private static int countTasks(List<JarInstaller> archives) {
+		int count = 0;
+		for(JarInstaller archive : archives)
+			count += archive.taskList.size();
+		
+		return count;
+	}
+	
+	/**
+	 * Finishes up the installation of this installer's payload, writing its manifest and run.jar.
+	 */
+	private void finishInstallation() throws Exception {
+		String extractionFolder = extractionDirFilePath+extractionDirFileName;
+		File tempJarFile = new File(tempJarFilePath);
+		
+		report.begin("manifest");
+		
+		if(manifest != null) {
+			Path manifestFile = Paths.get(extractionFolder+InstallManifest.FILE_NAME);
+			
+			journalFile(manifestFile);
+			manifest.save(manifestFile);
+		}
+		
+		report.end("manifest");
+		
+		if(!streaming) {
+			report.begin("runJar");
+			progress.log("INSTALLING JARFILE: "+tempJarFile.getName());
+			
+			Path runJar = Paths.get(extractionFolder+"run.jar");
+			
+			journalFile(runJar);
+			Files.copy(tempJarFile.toPath(), runJar, StandardCopyOption.REPLACE_EXISTING);
+			progress.addBytes(tempJarFile.length());
+			report.end("runJar");
+		}
+	}
+	
+	/**
+	 * Moves every payload into place and then commits them.  No payload is committed until all of
+	 * them have been moved, and if any one cannot be, the ones already moved are moved back, so
+	 * that a failure in any one rolls back every payload.
+	 */
+	private void commitInstallations() throws Exception {
+		List<JarInstaller> renamed = new ArrayList<JarInstaller>();
+		
+		try {
+			for(JarInstaller archive : getArchives()) {
+				archive.renameInstallation();
+				renamed.add(archive);
+			}
+		} catch (Exception e) {
+			for(JarInstaller archive : renamed) {
+				try {
+					archive.undoRename();
+				} catch (IOException undo) {
+					e.addSuppressed(undo);
 				}
-				
-				jarInstallerUI.incrementProgress(1);
 			}
+			
+			throw e;
+		}
+		
+		for(JarInstaller archive : getArchives())
+			archive.commitInstallation();
+	}
+	
+	/**
+	 * Returns the folder this installer's payload is in once it is installed.
+	 */
+	private String getInstalledFolder() {
+		return extractionDirFilePath+extractionDirFileName.replaceFirst("^[.]", "");
+	}
+	
+	/**
+	 * Moves this installer's payload from its hidden folder into place.  The checkpoint of a
+	 * resumable installation is closed first, but kept until the payload is committed.
+	 */
+	private void renameInstallation() throws IOException {
+		if(checkpoint != null)
+			checkpoint.closeCheckpoint();
+		
+		report.begin("rename");
+		
+		if(extractionDirFileName.startsWith("."))
+			Files.move(Paths.get(extractionDirFilePath+extractionDirFileName), 
+					Paths.get(getInstalledFolder()), StandardCopyOption.REPLACE_EXISTING);
+		
+		report.end("rename");
+	}
+	
+	/**
+	 * Moves this installer's payload back to its hidden folder, so that it can be rolled back.
+	 */
+	private void undoRename() throws IOException {
+		if(extractionDirFileName.startsWith("."))
+			Files.move(Paths.get(getInstalledFolder()), Paths.get(extractionDirFilePath+extractionDirFileName));
+	}
+	
+	/**
+	 * Commits this installer's payload once it is in place, removing its journal and checkpoint.
+	 */
+	private void commitInstallation() throws IOException {
+		report.begin("commit");
+		
+		for(Path failure : journal.commit())
+			System.err.println("COULD NOT REMOVE: "+failure);
+		
+		if(checkpoint != null) {
+			Files.deleteIfExists(Paths.get(getInstalledFolder()+InstallManifest.CHECKPOINT_FILE_NAME));
+			checkpoint = null;
+		}
+		
+		report.end("commit");
+	
+		progress.addEntries(1);
+	}
+	
+	/**
+	 * Returns a task which upon execution, writes files from a *.jar to a directory, one after the
+	 * other on the same worker.  Entries with identical contents are then hard-linked to the written
+	 * file, or copied from it if the file system does not support links.  A batch of several small
+	 * entries is logged once, instead of once per entry.
+	 */
+	private Runnable queueBatch(MappedJarReader jar, int[] entries, Map<Integer, int[]> links) {
+		return new Runnable() {
+			public void run() {
+				Thread worker = Thread.currentThread();
+				boolean batched = entries.length > 1;
+				
+				if(batched)
+					progress.log("INSTALLING "+jar.getName(entries[0])+" AND "+(entries.length-1)+" MORE");
+				
+				for(int entry : entries) {
+					try {
+						if(!extract(jar, entry, links.get(entry), !batched))
+							return;
+					} catch (ClosedByInterruptException e) {
+						progress.log("CANCELLING "+jar.getName(entry));
+						return;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
 					
+					if(worker.isInterrupted())
+						return;
+				}
+			}
 		};
+	}
+	
+	/**
+	 * Writes a file from a *.jar to a directory, followed by the files hard-linked to it.
+	 * 
+	 * @return false if the worker was interrupted before the file was written.
+	 */
+	private boolean extract(MappedJarReader jar, int entry, int[] links, boolean log) throws IOException {
+		Thread worker = Thread.currentThread();
+		String fileName = jar.getName(entry);
+		Path target = plan.getTarget(entry);
+		
+		if(isCheckpointed(jar, entry, target)) {
+			if(log)
+				progress.log("VERIFIED "+fileName);
+			
+			progress.addBytes(jar.getSize(entry));
+			report.verified();
+		} else {
+			if(log)
+				progress.log("INSTALLING "+fileName);
+			
+			journalFile(target);
+			
+			InstallerEvents.EntryExtracted event = new InstallerEvents.EntryExtracted();
+			event.begin();
+			
+			long started = System.nanoTime();
+			boolean stored = jar.getMethod(entry) == ZipEntry.STORED;
+			long written = extractChecked(jar, entry, target);
+			
+			if(worker.isInterrupted()) {
+				progress.log("CANCELLING "+fileName);
+				return false;
+			}
+			
+			record(jar, entry, target);
+			report.entry(stored, System.nanoTime()-started, written);
+			
+			event.end();
+			if(event.shouldCommit()) {
+				event.name = fileName;
+				event.compressedSize = jar.getCompressedSize(entry);
+				event.size = written;
+				event.stored = stored;
+				event.worker = worker.getName();
+				event.commit();
+			}
+		}
+		
+		progress.addEntries(1);
 		
-		return writerThread;
+		if(links != null) {
+			for(int link : links) {
+				Path linkTarget = plan.getTarget(link);
+				
+				if(!isCheckpointed(jar, link, linkTarget)) {
+					if(log)
+						progress.log("LINKING "+jar.getName(link));
+					
+					long started = System.nanoTime();
+					
+					journalFile(linkTarget);
+					writeLink(target, linkTarget);
+					record(jar, link, linkTarget);
+					report.linked(System.nanoTime()-started);
+				} else {
+					report.verified();
+				}
+				
+				progress.addBytes(jar.getSize(link));
+				progress.addEntries(1);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Writes a file from a *.jar to a directory, checking what was written against the archive.  A
+	 * file that fails its checks is extracted again, and fails the installation if it still does
+	 * after {@value #MAX_ATTEMPTS} attempts.
+	 * 
+	 * @return the number of bytes written.
+	 */
+	private long extractChecked(MappedJarReader jar, int entry, Path target) throws IOException {
+		if(checks == null)
+			return entryWriter.extract(jar, entry, target, progress);
+		
+		EntryCheck check = checks.get();
+		String name = jar.getName(entry);
+		
+		for(int attempt = 1; ; attempt++) {
+			check.reset();
+			long written = entryWriter.extract(jar, entry, target, check, progress);
+			
+			if(Thread.currentThread().isInterrupted() || check.matches(jar.getSize(entry), jar.getCrc(entry), digests.get(name)))
+				return written;
+			
+			report.corrupt();
+			progress.addBytes(-written);
+			
+			if(attempt == MAX_ATTEMPTS)
+				throw new ZipException("Entry failed verification "+MAX_ATTEMPTS+" times: "+name);
+			
+			progress.log("RE-EXTRACTING "+name);
+			report.reextracted();
+		}
+	}
+	
+	/**
+	 * Records a file that is about to be written in the journal.  An installation in place backs up
+	 * the file it replaces, so that rolling it back restores the existing installation.
+	 */
+	private void journalFile(Path target) throws IOException {
+		if(inPlace)
+			journal.replace(target);
+		else
+			journal.file(target);
+	}
+	
+	/**
+	 * Returns true if a resumed installation already wrote an entry, and the file still holds its
+	 * contents.
+	 */
+	private boolean isCheckpointed(MappedJarReader jar, int entry, Path target) {
+		return checkpoint != null && checkpoint.isIntact(jar.getName(entry), jar.getSize(entry), jar.getCrc(entry), target);
+	}
+	
+	/**
+	 * Records an entry that was written in the manifest and the checkpoint.
+	 */
+	private void record(MappedJarReader jar, int entry, Path target) throws IOException {
+		if(manifest != null)
+			manifest.put(jar.getName(entry), jar.getSize(entry), jar.getCrc(entry), target);
+		if(checkpoint != null)
+			checkpoint.put(jar.getName(entry), jar.getSize(entry), jar.getCrc(entry), target);
+	}
+	
+	/**
+	 * Hard-links a file to an existing one, falling back to a copy if the link cannot be created.
+	 */
+	private void writeLink(Path existing, Path link) throws IOException {
+		Files.deleteIfExists(link);
+		
+		try {
+			Files.createLink(link, existing);
+		} catch (UnsupportedOperationException | IOException e) {
+			Files.copy(existing, link, StandardCopyOption.REPLACE_EXISTING);
+		}
 	}
 	
 	/**
@@ -283,20 +1203,22 @@ public final class JarInstaller {
 	protected void addShutdownHook() {
 		shutdownHook = new Thread() {
 			public void run() {
-				if(currentThread != null) {
-					currentThread.interrupt();
+				if(engine != null) {
+					engine.cancel();
 					try {
-						currentThread.join();
+						engine.awaitTermination(30, TimeUnit.SECONDS);
 					} catch (InterruptedException e) {
 						e.printStackTrace();
 					}
 				}
 				
-				if(jarFile != null) {
-					try {
-						jarFile.close();
-					} catch (IOException e) {
-						e.printStackTrace();
+				for(JarInstaller archive : getArchives()) {
+					if(archive.jarReader != null) {
+						try {
+							archive.jarReader.close();
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
 					}
 				}
 				
@@ -306,7 +1228,7 @@ public final class JarInstaller {
 					System.err.println("INSTALLATION DID NOT ABORT CLEANLY");
 					System.err.println("CHECK: ["+extractionDirFilePath+"] FOR UNWANTED FILES.");
 
-					JOptionPane.showMessageDialog(null, "Installation did not abort cleanly\nCheck: ["+extractionDirFilePath+"] for unwanted files.");
+					jarInstallerUI.showMessage("Installer", "Installation did not abort cleanly\nCheck: ["+extractionDirFilePath+"] for unwanted files.", false);
 				}
 			}
 		};
@@ -316,33 +1238,86 @@ public final class JarInstaller {
 	}
 
 	/**
-	 * Quits the installer with an exception.
+	 * Returns true if the installation was cancelled, by the user or by the virtual machine
+	 * shutting down.
+	 */
+	protected boolean isCancelled() {
+		ExtractionEngine engine = this.engine;
+		return engine != null && engine.isCancelled();
+	}
+	
+	/**
+	 * Quits the installer with an exception.  The exit status is 1 if there was a problem with the
+	 * installation.  A cancelled installation is not a problem: the shutdown hook that cancelled it
+	 * is already rolling it back or keeping its checkpoint, so this only logs the cancel and returns.
 	 */
 	protected void quit(Exception e) {
-		if(e != null && !e.getMessage().equals("<NULL>")) {
+		if(e != null && isCancelled()) {
+			System.out.println("INSTALLATION CANCELLED");
+			return;
+		}
+		
+		if(e != null && !"<NULL>".equals(e.getMessage())) {
 			e.printStackTrace();
 			
-			JOptionPane.showMessageDialog(null, "There was a problem with the installation.\n\n"+
-					"Error:\n"+e.getMessage(), "Installation Error", JOptionPane.ERROR_MESSAGE);
+			jarInstallerUI.showMessage("Installation Error", "There was a problem with the installation.\n\n"+
+					"Error:\n"+e.getMessage(), true);
+			
+			System.exit(1);
 		}
 		
 		System.exit(0);
 	}
 	
 	/**
-	 * Aborts the installation.
+	 * Aborts the installation of every payload, rolling back everything their journals recorded.
+	 * Content in the extraction folders that the installation did not create is left in place, and
+	 * the files it replaced are restored.  A resumable installation keeps its journals and
+	 * checkpoints instead, so that it can be resumed.  A finished installation is uninstalled.
 	 */
 	protected boolean abort() {
-		File dir = null;
-		if(extractionDirFilePath != null && extractionDirFileName != null)
-			dir = new File(extractionDirFilePath+extractionDirFileName);
+		boolean clean = true;
 		
+		for(JarInstaller archive : getArchives())
+			clean &= archive.abortPayload();
+		
+		return clean;
+	}
+	
+	/**
+	 * Aborts the installation of this installer's payload, returning true if it was rolled back
+	 * or checkpointed cleanly.  A payload that was already committed is uninstalled instead, by
+	 * removing its folder.
+	 */
+	private boolean abortPayload() {
 		File tempJar = null;
 		if(tempJarFilePath != null)
 			tempJar = new File(tempJarFilePath);
 		
-		return ( tempJar == null || (!tempJar.exists() || tempJar.delete())) && 
-				dir == null || ((!dir.exists() || FileModifier.removeDirectory(dir)) );
+		boolean tempJarRemoved = tempJar == null || !tempJar.exists() || tempJar.delete();
+		
+		if(journal == null)
+			return tempJarRemoved;
+		
+		if(journal.isCommitted())
+			return FileModifier.removeDirectory(new File(getInstalledFolder())) && tempJarRemoved;
+		
+		if(checkpoint != null) {
+			try {
+				checkpoint.closeCheckpoint();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			
+			System.out.println("INSTALLATION CHECKPOINTED, INSTALL AGAIN TO RESUME");
+			return tempJarRemoved;
+		}
+		
+		List<Path> failures = journal.rollback();
+		for(Path failure : failures)
+			System.err.println("COULD NOT REMOVE: "+failure);
+		
+		return tempJarRemoved && failures.isEmpty();
 	}
 	
 	/**
@@ -363,8 +1338,17 @@ public final class JarInstaller {
 	 * Finishes the installation.
 	 */
 	protected boolean finish() {
-		File tempJar = new File(tempJarFilePath);
-		return (!tempJar.exists() || tempJar.delete());
+		boolean clean = true;
+		
+		for(JarInstaller archive : getArchives()) {
+			if(archive.tempJarFilePath == null)
+				continue;
+			
+			File tempJar = new File(archive.tempJarFilePath);
+			clean &= (!tempJar.exists() || tempJar.delete());
+		}
+		
+		return clean;
 	}
 	
 }
\ No newline at end of file
@@ -1,56 +1,134 @@
 package components;
 
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.image.BufferedImage;
-
-import javax.imageio.ImageIO;
-import javax.swing.JFrame;
-import javax.swing.UIManager;
-
+/**
+ * Class models the user interface of a {@link JarInstaller}.  It does not depend on Swing or AWT,
+ * so that an installation without a display never initializes them; see {@link SwingInstallerUI}
+ * for the base of the windowed interfaces.
+ * 
+ * @author kieransherman
+ *
+ */
 public abstract class JarInstallerUI {
 	
-	protected JFrame window;
 	protected Thread shutdownHook;
 	protected JarInstaller installer;
+	protected InstallProgress installProgress;
 	
-	protected Color light_gold = new Color(255, 245, 104);
-	protected Color darker_blue = new Color(12, 152, 207);
-	protected Color lighter_blue = new Color(10, 160, 217);
-	protected Color gray = new Color(108, 110, 112);
-	protected Color dark_gray = new Color(45, 48, 51);
+	private String sampledText;
+	private long sampledValue = -1;
+	private long nextStatistics;
+	private ThroughputMeter throughput;
 	
-	protected Font tahoma = new Font("Tahoma", Font.PLAIN, 13);
+	protected static final int FRAME_INTERVAL = 33;
+	protected static final int PROGRESS_SCALE = 1000;
+	protected static final long STATISTICS_INTERVAL = 500_000_000L;
 	
 	public enum InstallationUI {
 		GRAPHICAL, 
-		DEFAULT;
+		DEFAULT,
+		HEADLESS;
 	}
 	
 	/**
-	 * Creates a new JarInstallerUI object with a JarInstaller reference.  Also
-	 * sets the look and feel to MetalLookAndFeel.
+	 * Creates a new JarInstallerUI object with a JarInstaller reference.
 	 * 
 	 * @param installer
 	 */
 	public JarInstallerUI(JarInstaller installer) {
-		try {
-			UIManager.setLookAndFeel("javax.swing.plaf.metal.MetalLookAndFeel");
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		
 		this.installer = installer;
 	}
 	
-	protected BufferedImage loadImage(String filePath) {
-		try {
-			return ImageIO.read(getClass().getClassLoader().getResourceAsStream(filePath));
-		} catch (Exception e) {
-			e.printStackTrace();
+	/**
+	 * Begins sampling an installation's progress, once every frame.  Sampling stops after the
+	 * installation finishes.
+	 * 
+	 * @param progress the progress of the installation.
+	 */
+	protected void startSampling(InstallProgress progress) {
+		this.installProgress = progress;
+		this.throughput = new ThroughputMeter(3);
+		
+		setMaximumProgress(PROGRESS_SCALE);
+		startSampler();
+	}
+	
+	/**
+	 * Shows the latest progress of the installation.  Samples are always taken on the same thread.
+	 */
+	protected void sample() {
+		boolean finished = installProgress.isFinished();
+		
+		String line;
+		while((line = installProgress.pollLog()) != null)
+			log(line);
+		
+		String text = installProgress.getText();
+		if(text != sampledText) {
+			setText(text);
+			sampledText = text;
 		}
 		
-		return null;
+		long totalBytes = installProgress.getTotalBytes();
+		long totalEntries = installProgress.getTotalEntries();
+		long bytesDone = installProgress.getBytesDone();
+		
+		double fraction;
+		if(finished)
+			fraction = 1;
+		else
+		if(totalBytes > 0)
+			fraction = Math.min(1, (double)bytesDone/totalBytes);
+		else
+		if(totalEntries > 0)
+			fraction = Math.min(1, (double)installProgress.getEntriesDone()/totalEntries);
+		else
+			fraction = 0;
+		
+		long value = (long)(fraction*PROGRESS_SCALE);
+		if(value != sampledValue) {
+			setProgress((int)value);
+			sampledValue = value;
+		}
+		
+		long now = System.nanoTime();
+		double rate = throughput.sample(bytesDone, now);
+		
+		if(finished) {
+			setStatistics(throughput.getAverageRate(), 0);
+			stopSampler();
+			setFinishable(true);
+		} else
+		if(now-nextStatistics >= 0) {
+			long secondsRemaining = -1;
+			
+			if(totalBytes > 0 && rate > 0)
+				secondsRemaining = (long)Math.ceil((totalBytes-bytesDone)/rate);
+			else
+			if(totalBytes <= 0 && fraction > 0)
+				secondsRemaining = (long)Math.ceil(throughput.getElapsedSeconds()*(1-fraction)/fraction);
+			
+			setStatistics(rate, secondsRemaining);
+			nextStatistics = now+STATISTICS_INTERVAL;
+		}
+	}
+	
+	/**
+	 * Returns a throughput and the time remaining as a line of text, such as
+	 * "12.5 MB/s, 0:42 remaining".
+	 * 
+	 * @param bytesPerSecond the throughput.
+	 * @param secondsRemaining the time remaining, or -1 if it is not known yet.
+	 */
+	protected static String formatStatistics(double bytesPerSecond, long secondsRemaining) {
+		String rate = String.format("%.1f MB/s", bytesPerSecond/(1024*1024));
+		
+		if(secondsRemaining < 0)
+			return rate+", estimating time remaining";
+		else
+		if(secondsRemaining == 0)
+			return rate;
+		
+		return String.format("%s, %d:%02d remaining", rate, secondsRemaining/60, secondsRemaining%60);
 	}
 	
 	protected abstract boolean display();
@@ -60,6 +138,10 @@ public abstract class JarInstallerUI {
 	protected abstract void log(String line);
 	protected abstract void setText(String line);
 	protected abstract void setMaximumProgress(int value);
-	protected abstract void incrementProgress(int value);
+	protected abstract void setProgress(int value);
+	protected abstract void setStatistics(double bytesPerSecond, long secondsRemaining);
+	protected abstract void showMessage(String title, String message, boolean error);
+	protected abstract void startSampler();
+	protected abstract void stopSampler();
 
 }
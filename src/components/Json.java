@@ -0,0 +1,53 @@
+package components;
+
+import java.util.Locale;
+
+/**
+ * Class holds the helpers shared by the JSON the installer writes.
+ *
+ * @author kieransherman
+ *
+ */
+final class Json {
+
+	private Json() {
+	}
+	
+	/**
+	 * Returns a string as a JSON string literal, or null as the JSON null.
+	 */
+	static String quote(String str) {
+		if(str == null)
+			return "null";
+		
+		StringBuilder quoted = new StringBuilder(str.length()+2).append('"');
+		
+		for(int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			
+			if(c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else
+			if(c == '\n')
+				quoted.append("\\n");
+			else
+			if(c < 0x20)
+				quoted.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+			else
+				quoted.append(c);
+		}
+		
+		return quoted.append('"').toString();
+	}
+	
+	/**
+	 * Returns a value as JSON: numbers and booleans as they are, and anything else as a string.
+	 */
+	static String value(Object value) {
+		if(value instanceof Number || value instanceof Boolean)
+			return value.toString();
+		
+		return quote(value == null ? null : value.toString());
+	}
+
+}
@@ -0,0 +1,122 @@
+package components;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class models a histogram of latencies in nanoseconds, with one bucket per power of two.  Workers
+ * record into it concurrently without taking any locks.
+ *
+ * @author kieransherman
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+	
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong sum;
+	private final AtomicLong max;
+	
+	/**
+	 * Creates a new, empty LatencyHistogram.
+	 */
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.sum = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+	
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos the latency in nanoseconds.
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		
+		long current;
+		while(nanos > (current = max.get()) && !max.compareAndSet(current, nanos));
+	}
+	
+	/**
+	 * Returns the number of latencies recorded.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Returns an upper bound of a percentile of the recorded latencies, in nanoseconds: the upper
+	 * bound of the bucket the percentile falls in, or the maximum if that is lower.
+	 *
+	 * @param percentile the percentile, between 0 and 100.
+	 */
+	public long getPercentile(double percentile) {
+		long total = count.get();
+		if(total == 0)
+			return 0;
+		
+		long rank = Math.max(1, (long)Math.ceil(total*percentile/100));
+		long seen = 0;
+		
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.get(bucket);
+			if(seen >= rank)
+				return Math.min(upperBound(bucket), max.get());
+		}
+		
+		return max.get();
+	}
+	
+	/**
+	 * Returns the histogram as a JSON object, listing only the buckets that are not empty.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{");
+		
+		json.append("\"count\":").append(count.get());
+		json.append(",\"sumNanos\":").append(sum.get());
+		json.append(",\"maxNanos\":").append(max.get());
+		json.append(",\"p50Nanos\":").append(getPercentile(50));
+		json.append(",\"p90Nanos\":").append(getPercentile(90));
+		json.append(",\"p99Nanos\":").append(getPercentile(99));
+		json.append(",\"buckets\":[");
+		
+		boolean first = true;
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			long bucketCount = counts.get(bucket);
+			if(bucketCount == 0)
+				continue;
+			
+			if(!first)
+				json.append(',');
+			
+			json.append("{\"upperNanos\":").append(upperBound(bucket)).append(",\"count\":").append(bucketCount).append('}');
+			first = false;
+		}
+		
+		return json.append("]}").toString();
+	}
+	
+	/**
+	 * Returns the bucket of a latency: bucket n holds latencies below 2^n.
+	 */
+	private static int bucket(long nanos) {
+		return Math.min(BUCKETS-1, 64-Long.numberOfLeadingZeros(nanos));
+	}
+	
+	/**
+	 * Returns the exclusive upper bound of a bucket.
+	 */
+	private static long upperBound(int bucket) {
+		return bucket >= 63 ? Long.MAX_VALUE : 1L << bucket;
+	}
+
+}
@@ -0,0 +1,462 @@
+package components;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Class models a read-only view of a .jar file that is memory-mapped and indexed by its central
+ * directory.  Entries are addressed by their position in the index, and every call to
+ * {@link #getInputStream(int)} reads from an independent slice of the mapping, so that workers can
+ * inflate entries in parallel without sharing a lock.
+ * <p>
+ * Archives that fit in a single mapping are mapped once; larger archives are mapped one entry at a
+ * time.
+ *
+ * @author kieransherman
+ *
+ */
+public class MappedJarReader implements Closeable {
+
+	private static final int LOC_SIG = 0x04034b50;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int END_SIG = 0x06054b50;
+	private static final int ZIP64_END_SIG = 0x06064b50;
+	private static final int ZIP64_LOC_SIG = 0x07064b50;
+	
+	private static final int LOC_HEADER = 30;
+	private static final int CEN_HEADER = 46;
+	private static final int END_HEADER = 22;
+	private static final int ZIP64_LOC_HEADER = 20;
+	
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	
+	private final Path archive;
+	private final FileChannel channel;
+	private final MappedByteBuffer mapping;
+	
+	private String[] names;
+	private long[] headerOffsets;
+	private long[] compressedSizes;
+	private long[] sizes;
+	private int[] crcs;
+	private short[] methods;
+	
+	/**
+	 * Opens and indexes a .jar file.
+	 *
+	 * @param archive the .jar file to read.
+	 * @throws IOException the file could not be read or is not a valid archive.
+	 */
+	public MappedJarReader(Path archive) throws IOException {
+		this.archive = archive;
+		this.channel = FileChannel.open(archive, StandardOpenOption.READ);
+		
+		try {
+			long length = channel.size();
+			this.mapping = length <= Integer.MAX_VALUE ? channel.map(MapMode.READ_ONLY, 0, length) : null;
+			
+			readCentralDirectory(length);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the path to the archive.
+	 */
+	public Path getArchive() {
+		return archive;
+	}
+	
+	/**
+	 * Returns the number of entries in the archive.
+	 */
+	public int size() {
+		return names.length;
+	}
+	
+	/**
+	 * Returns the name of an entry.
+	 */
+	public String getName(int entry) {
+		return names[entry];
+	}
+	
+	/**
+	 * Returns true if an entry is a directory.
+	 */
+	public boolean isDirectory(int entry) {
+		return names[entry].endsWith("/");
+	}
+	
+	/**
+	 * Returns the uncompressed size of an entry.
+	 */
+	public long getSize(int entry) {
+		return sizes[entry];
+	}
+	
+	/**
+	 * Returns the compressed size of an entry.
+	 */
+	public long getCompressedSize(int entry) {
+		return compressedSizes[entry];
+	}
+	
+	/**
+	 * Returns the CRC-32 of an entry's uncompressed contents.
+	 */
+	public long getCrc(int entry) {
+		return crcs[entry] & 0xFFFFFFFFL;
+	}
+	
+	/**
+	 * Returns the compression method of an entry, either {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+	 */
+	public int getMethod(int entry) {
+		return methods[entry];
+	}
+	
+	/**
+	 * Returns a fingerprint of the archive's contents, computed from the name, size and CRC-32 of
+	 * every entry in the central directory.
+	 */
+	public long getFingerprint() {
+		CRC32 checksum = new CRC32();
+		ByteBuffer record = ByteBuffer.allocate(12);
+		
+		for(int i = 0; i < names.length; i++) {
+			checksum.update(names[i].getBytes(StandardCharsets.UTF_8));
+			
+			record.clear();
+			record.putLong(sizes[i]).putInt(crcs[i]);
+			checksum.update(record.array());
+		}
+		
+		return ((long)names.length << 32) | checksum.getValue();
+	}
+	
+	/**
+	 * Returns the offset in the archive at which an entry's data begins.
+	 *
+	 * @throws IOException the entry's local header is invalid.
+	 */
+	public long getDataOffset(int entry) throws IOException {
+		long offset = headerOffsets[entry];
+		ByteBuffer header = map(offset, LOC_HEADER);
+		
+		if(header.getInt(0) != LOC_SIG)
+			throw new ZipException("Invalid local header: "+names[entry]);
+		
+		return offset+LOC_HEADER+(header.getShort(26) & 0xFFFF)+(header.getShort(28) & 0xFFFF);
+	}
+	
+	/**
+	 * Returns an independent buffer over an entry's raw, possibly compressed, data.
+	 *
+	 * @throws IOException the entry could not be mapped.
+	 */
+	public ByteBuffer getData(int entry) throws IOException {
+		long length = compressedSizes[entry];
+		if(length > Integer.MAX_VALUE)
+			throw new ZipException("Entry too large to map: "+names[entry]);
+		
+		return map(getDataOffset(entry), (int)length);
+	}
+	
+	/**
+	 * Returns an independent buffer over part of an entry's raw data, for reading entries too large
+	 * to map whole.
+	 *
+	 * @param dataOffset the entry's data offset, from {@link #getDataOffset(int)}.
+	 * @param position the position within the entry to read from.
+	 * @param length the number of bytes.
+	 * @throws IOException the region could not be mapped.
+	 */
+	public ByteBuffer getData(long dataOffset, long position, int length) throws IOException {
+		return map(dataOffset+position, length);
+	}
+	
+	/**
+	 * Returns a stream over an entry's uncompressed contents.
+	 *
+	 * @throws IOException the entry could not be read.
+	 */
+	public InputStream getInputStream(int entry) throws IOException {
+		if(methods[entry] == ZipEntry.STORED)
+			return new StoredInputStream(getData(entry));
+		if(methods[entry] == ZipEntry.DEFLATED)
+			return new InflatingInputStream(getData(entry), names[entry], new Inflater(true), true);
+		
+		throw new ZipException("Unsupported compression method "+methods[entry]+": "+names[entry]);
+	}
+	
+	/**
+	 * Returns a stream over an entry's uncompressed contents that inflates with a caller's
+	 * inflater.  The inflater is reset first, and is not ended when the stream is closed, so that
+	 * it can be reused for the next entry.
+	 *
+	 * @param entry the index of the entry.
+	 * @param inflater an inflater for raw deflate data, without a zlib header.
+	 * @throws IOException the entry could not be read.
+	 */
+	public InputStream getInputStream(int entry, Inflater inflater) throws IOException {
+		if(methods[entry] == ZipEntry.DEFLATED) {
+			inflater.reset();
+			return new InflatingInputStream(getData(entry), names[entry], inflater, false);
+		}
+		
+		return getInputStream(entry);
+	}
+	
+	/**
+	 * Transfers part of a stored entry's data directly from the archive to a channel, without
+	 * copying it through the Java heap.
+	 *
+	 * @param dataOffset the entry's data offset, from {@link #getDataOffset(int)}.
+	 * @param position the position within the entry to transfer from.
+	 * @param count the maximum number of bytes to transfer.
+	 * @param target the channel to write to.
+	 * @return the number of bytes transferred.
+	 * @throws IOException the entry could not be transferred.
+	 */
+	public long transferTo(long dataOffset, long position, long count, WritableByteChannel target) throws IOException {
+		return channel.transferTo(dataOffset+position, count, target);
+	}
+	
+	/**
+	 * Closes the archive.  Slices that were already handed out stay readable until they are
+	 * garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Returns a little-endian buffer over a region of the archive.
+	 */
+	private ByteBuffer map(long offset, int length) throws IOException {
+		ByteBuffer region;
+		
+		if(mapping != null) {
+			if(offset < 0 || offset+length > mapping.capacity())
+				throw new ZipException("Entry out of bounds in "+archive);
+			
+			region = mapping.duplicate();
+			region.position((int)offset);
+			region.limit((int)offset+length);
+			region = region.slice();
+		} else {
+			region = channel.map(MapMode.READ_ONLY, offset, length);
+		}
+		
+		return region.order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Parses the central directory into the index.
+	 */
+	private void readCentralDirectory(long length) throws IOException {
+		int tailLength = (int)Math.min(length, END_HEADER+0xFFFF+ZIP64_LOC_HEADER);
+		long tailOffset = length-tailLength;
+		ByteBuffer tail = map(tailOffset, tailLength);
+		
+		int end = -1;
+		for(int i = tailLength-END_HEADER; i >= 0; i--) {
+			if(tail.getInt(i) == END_SIG && i+END_HEADER+(tail.getShort(i+20) & 0xFFFF) <= tailLength) {
+				end = i;
+				break;
+			}
+		}
+		
+		if(end == -1)
+			throw new ZipException("Missing end of central directory: "+archive);
+		
+		long count = tail.getShort(end+10) & 0xFFFF;
+		long cenSize = tail.getInt(end+12) & ZIP64_MAGIC;
+		long cenOffset = tail.getInt(end+16) & ZIP64_MAGIC;
+		
+		if(end >= ZIP64_LOC_HEADER && tail.getInt(end-ZIP64_LOC_HEADER) == ZIP64_LOC_SIG) {
+			ByteBuffer zip64End = map(tail.getLong(end-ZIP64_LOC_HEADER+8), 56);
+			
+			if(zip64End.getInt(0) != ZIP64_END_SIG)
+				throw new ZipException("Invalid zip64 end of central directory: "+archive);
+			
+			count = zip64End.getLong(32);
+			cenSize = zip64End.getLong(40);
+			cenOffset = zip64End.getLong(48);
+		}
+		
+		if(count > Integer.MAX_VALUE || cenSize > Integer.MAX_VALUE || cenOffset+cenSize > length)
+			throw new ZipException("Invalid central directory: "+archive);
+		
+		int entries = (int)count;
+		names = new String[entries];
+		headerOffsets = new long[entries];
+		compressedSizes = new long[entries];
+		sizes = new long[entries];
+		crcs = new int[entries];
+		methods = new short[entries];
+		
+		ByteBuffer cen = map(cenOffset, (int)cenSize);
+		byte[] name = new byte[256];
+		int pos = 0;
+		
+		for(int i = 0; i < entries; i++) {
+			if(pos+CEN_HEADER > cen.limit() || cen.getInt(pos) != CEN_SIG)
+				throw new ZipException("Invalid central directory header: "+archive);
+			
+			if((cen.getShort(pos+8) & 1) != 0)
+				throw new ZipException("Encrypted entries are not supported: "+archive);
+			
+			int nameLength = cen.getShort(pos+28) & 0xFFFF;
+			int extraLength = cen.getShort(pos+30) & 0xFFFF;
+			int commentLength = cen.getShort(pos+32) & 0xFFFF;
+			
+			methods[i] = cen.getShort(pos+10);
+			crcs[i] = cen.getInt(pos+16);
+			compressedSizes[i] = cen.getInt(pos+20) & ZIP64_MAGIC;
+			sizes[i] = cen.getInt(pos+24) & ZIP64_MAGIC;
+			headerOffsets[i] = cen.getInt(pos+42) & ZIP64_MAGIC;
+			
+			if(name.length < nameLength)
+				name = new byte[nameLength];
+			cen.position(pos+CEN_HEADER);
+			cen.get(name, 0, nameLength);
+			names[i] = new String(name, 0, nameLength, StandardCharsets.UTF_8);
+			
+			readZip64Extra(cen, pos+CEN_HEADER+nameLength, extraLength, i);
+			
+			pos += CEN_HEADER+nameLength+extraLength+commentLength;
+		}
+	}
+	
+	/**
+	 * Replaces the sizes and offset of an entry with their zip64 values, if present.
+	 */
+	private void readZip64Extra(ByteBuffer cen, int pos, int length, int entry) {
+		int end = pos+length;
+		
+		while(pos+4 <= end) {
+			int id = cen.getShort(pos) & 0xFFFF;
+			int size = cen.getShort(pos+2) & 0xFFFF;
+			int field = pos+4;
+			
+			if(id == 0x0001) {
+				if(sizes[entry] == ZIP64_MAGIC && field+8 <= end) {
+					sizes[entry] = cen.getLong(field);
+					field += 8;
+				}
+				if(compressedSizes[entry] == ZIP64_MAGIC && field+8 <= end) {
+					compressedSizes[entry] = cen.getLong(field);
+					field += 8;
+				}
+				if(headerOffsets[entry] == ZIP64_MAGIC && field+8 <= end) {
+					headerOffsets[entry] = cen.getLong(field);
+				}
+				return;
+			}
+			
+			pos += 4+size;
+		}
+	}
+	
+	/**
+	 * Class models a stream over the contents of a stored entry.
+	 */
+	private static class StoredInputStream extends InputStream {
+		
+		private final ByteBuffer data;
+		
+		private StoredInputStream(ByteBuffer data) {
+			this.data = data;
+		}
+		
+		@Override
+		public int read() {
+			return data.hasRemaining() ? data.get() & 0xFF : -1;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(len == 0)
+				return 0;
+			if(!data.hasRemaining())
+				return -1;
+			
+			int read = Math.min(len, data.remaining());
+			data.get(b, off, read);
+			return read;
+		}
+		
+		@Override
+		public int available() {
+			return data.remaining();
+		}
+	}
+	
+	/**
+	 * Class models a stream that inflates a deflated entry directly from its mapped data.
+	 */
+	private static class InflatingInputStream extends InputStream {
+		
+		private final Inflater inflater;
+		private final String name;
+		private final boolean owned;
+		
+		private InflatingInputStream(ByteBuffer data, String name, Inflater inflater, boolean owned) {
+			this.inflater = inflater;
+			this.inflater.setInput(data);
+			this.name = name;
+			this.owned = owned;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0)
+				return 0;
+			
+			try {
+				int read = inflater.inflate(b, off, len);
+				if(read > 0)
+					return read;
+				if(inflater.finished() || inflater.needsInput())
+					return -1;
+				
+				throw new ZipException("Invalid deflated data: "+name);
+			} catch (DataFormatException e) {
+				throw new ZipException(e.getMessage()+": "+name);
+			}
+		}
+		
+		@Override
+		public void close() {
+			if(owned)
+				inflater.end();
+		}
+	}
+
+}
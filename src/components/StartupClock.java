@@ -0,0 +1,65 @@
+package components;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Class measures the time from the start of the installer to the first frame it shows.  Time the
+ * installer spends waiting for the user before its first frame, such as in the installer chooser,
+ * can be excluded.
+ * 
+ * @author kieransherman
+ *
+ */
+public final class StartupClock {
+
+	private static long startNanos = -1;
+	private static long excludedNanos;
+	private static boolean framed;
+	
+	private StartupClock() {
+	}
+	
+	/**
+	 * Starts the clock.  Called first thing in main.
+	 */
+	public static synchronized void start() {
+		if(startNanos < 0)
+			startNanos = System.nanoTime();
+	}
+	
+	/**
+	 * Excludes time spent waiting for the user from the measurement.
+	 * 
+	 * @param nanos the time waited, in nanoseconds.
+	 */
+	public static synchronized void exclude(long nanos) {
+		excludedNanos += nanos;
+	}
+	
+	/**
+	 * Marks the first frame, and reports the time it took once.  Later calls do nothing.
+	 * 
+	 * @param ui the name of the interface that showed the frame.
+	 * @return the line reporting the time to the first frame, or null if it was already reported
+	 * or the clock was never started.
+	 */
+	public static synchronized String firstFrame(String ui) {
+		if(framed || startNanos < 0)
+			return null;
+		
+		framed = true;
+		
+		long millis = (System.nanoTime()-startNanos-excludedNanos)/1000000;
+		String line = "FIRST FRAME ("+ui+") AFTER "+millis+" MS";
+		
+		Optional<Instant> processStart = ProcessHandle.current().info().startInstant();
+		if(processStart.isPresent()) {
+			long launchMillis = System.currentTimeMillis()-processStart.get().toEpochMilli()-excludedNanos/1000000;
+			line += ", "+launchMillis+" MS FROM LAUNCH";
+		}
+		
+		return line;
+	}
+
+}
@@ -0,0 +1,117 @@
+package components;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.UIManager;
+
+/**
+ * Class models the base of the windowed installer interfaces.  Progress is sampled on the event
+ * dispatch thread, and messages are shown in dialogs.
+ * 
+ * @author kieransherman
+ *
+ */
+public abstract class SwingInstallerUI extends JarInstallerUI {
+
+	protected JFrame window;
+	
+	private static boolean lookAndFeelInstalled;
+	
+	private Timer sampler;
+	
+	protected Color light_gold = new Color(255, 245, 104);
+	protected Color darker_blue = new Color(12, 152, 207);
+	protected Color lighter_blue = new Color(10, 160, 217);
+	protected Color gray = new Color(108, 110, 112);
+	protected Color dark_gray = new Color(45, 48, 51);
+	
+	protected Font tahoma = new Font("Tahoma", Font.PLAIN, 13);
+	
+	/**
+	 * Creates a new SwingInstallerUI object with a JarInstaller reference.  Also
+	 * sets the look and feel to MetalLookAndFeel, if it is not set yet.
+	 * 
+	 * @param installer
+	 */
+	public SwingInstallerUI(JarInstaller installer) {
+		super(installer);
+		
+		installLookAndFeel();
+	}
+	
+	/**
+	 * Sets the look and feel to MetalLookAndFeel once, so that it can be set before the first
+	 * window is shown instead of switching it afterwards.
+	 */
+	public static synchronized void installLookAndFeel() {
+		if(lookAndFeelInstalled)
+			return;
+		
+		try {
+			UIManager.setLookAndFeel("javax.swing.plaf.metal.MetalLookAndFeel");
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		
+		lookAndFeelInstalled = true;
+	}
+	
+	/**
+	 * Reports the time to the first frame once the window has opened and painted.
+	 * 
+	 * @param ui the name of the interface.
+	 */
+	protected void reportFirstFrame(String ui) {
+		window.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowOpened(WindowEvent e) {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						String line = StartupClock.firstFrame(ui);
+						if(line != null)
+							System.out.println(line);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Starts sampling on the event dispatch thread.
+	 */
+	@Override
+	protected void startSampler() {
+		sampler = new Timer(FRAME_INTERVAL, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				sample();
+			}
+		});
+		sampler.start();
+	}
+	
+	/**
+	 * Stops sampling.
+	 */
+	@Override
+	protected void stopSampler() {
+		sampler.stop();
+	}
+	
+	/**
+	 * Shows a message in a dialog.
+	 */
+	@Override
+	protected void showMessage(String title, String message, boolean error) {
+		JOptionPane.showMessageDialog(null, message, title, error ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+	}
+
+}
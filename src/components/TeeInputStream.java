@@ -0,0 +1,100 @@
+package components;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Class models an input stream that copies every byte read from it to an output stream.
+ *
+ * @author kieransherman
+ *
+ */
+public class TeeInputStream extends FilterInputStream {
+
+	private final OutputStream branch;
+	
+	private long bytesRead;
+	
+	/**
+	 * Creates a new TeeInputStream.
+	 *
+	 * @param in the stream to read from.
+	 * @param branch the stream that receives a copy of every byte read.
+	 */
+	public TeeInputStream(InputStream in, OutputStream branch) {
+		super(in);
+		this.branch = branch;
+	}
+	
+	/**
+	 * Returns the number of bytes read so far.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		if(b != -1) {
+			branch.write(b);
+			bytesRead++;
+		}
+		
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = in.read(b, off, len);
+		if(read > 0) {
+			branch.write(b, off, read);
+			bytesRead += read;
+		}
+		
+		return read;
+	}
+	
+	/**
+	 * Skips bytes by reading them, so that they still reach the branch.
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] buffer = new byte[(int)Math.min(8192, Math.max(n, 1))];
+		long skipped = 0;
+		
+		while(skipped < n) {
+			int read = read(buffer, 0, (int)Math.min(buffer.length, n-skipped));
+			if(read == -1)
+				break;
+			skipped += read;
+		}
+		
+		return skipped;
+	}
+	
+	/**
+	 * Reads the remainder of the stream so that the branch receives all of it.
+	 */
+	public void drain() throws IOException {
+		byte[] buffer = new byte[8192];
+		while(read(buffer, 0, buffer.length) != -1);
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			in.close();
+		} finally {
+			branch.close();
+		}
+	}
+
+}
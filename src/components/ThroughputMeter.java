@@ -0,0 +1,80 @@
+package components;
+
+/**
+ * Class models a smoothed measure of throughput.  Each sample is folded into an exponentially
+ * weighted moving average, weighted by the time since the previous sample, so that the rate
+ * settles quickly but does not jump with every burst of writes.
+ *
+ * @author kieransherman
+ *
+ */
+public class ThroughputMeter {
+
+	private final double timeConstant;
+	
+	private long startTime = -1;
+	private long startCount;
+	private long lastTime;
+	private long lastCount;
+	private double rate;
+	
+	/**
+	 * Creates a new ThroughputMeter.
+	 *
+	 * @param timeConstant the number of seconds over which older samples fade out.
+	 */
+	public ThroughputMeter(double timeConstant) {
+		this.timeConstant = timeConstant;
+	}
+	
+	/**
+	 * Adds a sample and returns the smoothed rate.
+	 *
+	 * @param count the total count so far, such as the number of bytes written.
+	 * @param nanoTime the time of the sample, from {@link System#nanoTime()}.
+	 * @return the smoothed rate, per second.
+	 */
+	public double sample(long count, long nanoTime) {
+		if(startTime < 0) {
+			startTime = lastTime = nanoTime;
+			startCount = lastCount = count;
+			return rate;
+		}
+		
+		double seconds = (nanoTime-lastTime)/1e9;
+		if(seconds <= 0)
+			return rate;
+		
+		double current = (count-lastCount)/seconds;
+		double weight = 1-Math.exp(-seconds/timeConstant);
+		
+		rate = lastTime == startTime ? current : rate+weight*(current-rate);
+		lastTime = nanoTime;
+		lastCount = count;
+		
+		return rate;
+	}
+	
+	/**
+	 * Returns the smoothed rate, per second.
+	 */
+	public double getRate() {
+		return rate;
+	}
+	
+	/**
+	 * Returns the average rate since the first sample, per second.
+	 */
+	public double getAverageRate() {
+		double seconds = (lastTime-startTime)/1e9;
+		return seconds > 0 ? (lastCount-startCount)/seconds : rate;
+	}
+	
+	/**
+	 * Returns the seconds since the first sample.
+	 */
+	public double getElapsedSeconds() {
+		return startTime < 0 ? 0 : (lastTime-startTime)/1e9;
+	}
+
+}
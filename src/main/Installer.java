@@ -2,22 +2,48 @@ package main;
 
 import javax.swing.JOptionPane;
 
+import components.InstallOptions;
 import components.JarInstaller;
 import components.JarInstallerUI.InstallationUI;
+import components.StartupClock;
+import components.SwingInstallerUI;
 
 public class Installer {
 	
 	public static void main(String [] args) {
+		StartupClock.start();
+		
 		InstallationUI ui = null;
+		InstallOptions options;
+		
+		try {
+			options = InstallOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(InstallOptions.usage());
+			System.exit(2);
+			return;
+		}
+		
+		if(options.isHelp()) {
+			System.out.println(InstallOptions.usage());
+			return;
+		}
 
 		for(String s : args)
 			if(s.contains("skip"))
 				ui = InstallationUI.DEFAULT;
 		
+		if(options.isHeadless())
+			ui = InstallationUI.HEADLESS;
+		
 		if(ui == null) {
+			SwingInstallerUI.installLookAndFeel();
+			
+			long choosing = System.nanoTime();
 			int installer = JOptionPane.showOptionDialog(null, "Choose your installer", "Installer", 
 					JOptionPane.NO_OPTION, JOptionPane.PLAIN_MESSAGE, null, new String[]{"Cancel", "Graphical", "Default"}, null);
-			
+			StartupClock.exclude(System.nanoTime()-choosing);
 			
 			if(installer == 0) {
 				System.exit(0);
@@ -33,7 +59,7 @@ public class Installer {
 		}
 		
 		JarInstaller jarInstaller = new JarInstaller("textgame.jar");
-		jarInstaller.startInstallation(ui);
+		jarInstaller.startInstallation(ui, options);
 	}
 	
 }